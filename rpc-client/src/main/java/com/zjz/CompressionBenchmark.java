@@ -0,0 +1,106 @@
+package com.zjz;
+
+import com.zjz.compress.Compressor;
+import com.zjz.entity.RpcResponse;
+import com.zjz.serializer.CommonSerializer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 压缩算法的基准测试：对不同类型和大小的消息体分别用各个压缩算法压缩和解压，
+ * 输出压缩率、压缩和解压的吞吐量，以及每毫秒CPU时间节省的字节数，用于选择压缩算法和压缩阈值。
+ * 消息体包括Kryo和JSON序列化的对象列表（典型的RPC响应）以及随机字节（不可压缩）。
+ */
+public class CompressionBenchmark {
+
+    // 消息体的大小，从1KB到1MB
+    private static final int[] PAYLOAD_SIZES = {1024, 4 * 1024, 64 * 1024, 1024 * 1024};
+    // 每种组合处理的总数据量，决定重复次数
+    private static final long BYTES_PER_ROUND = 64L * 1024 * 1024;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int[] COMPRESSORS = {Compressor.GZIP_COMPRESSOR, Compressor.SNAPPY_COMPRESSOR, Compressor.LZ4_COMPRESSOR};
+    private static final String[] WORDS = {"order", "user", "status", "PAID", "SHIPPED", "amount", "address",
+            "Beijing", "Shanghai", "item", "count", "price", "remark", "createTime", "2024-01-01"};
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        System.out.printf("%-7s %8s %-7s %6s %10s %10s %12s%n",
+                "payload", "size", "codec", "ratio", "comp MB/s", "decomp MB/s", "saved KB/ms");
+        for (String type : new String[]{"kryo", "json", "random"}) {
+            for (int size : PAYLOAD_SIZES) {
+                byte[] payload = payload(type, size);
+                for (int code : COMPRESSORS) {
+                    run(type, payload, Compressor.getByCode(code));
+                }
+            }
+        }
+    }
+
+    private static void run(String type, byte[] payload, Compressor compressor) {
+        int iterations = (int) Math.max(10, BYTES_PER_ROUND / payload.length);
+        byte[] compressed = new byte[compressor.maxCompressedLength(payload.length)];
+        byte[] output = new byte[payload.length];
+        int compressedLength = 0;
+        long compressNanos = 0;
+        long decompressNanos = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            // 只统计当前线程的CPU时间，排除GC和JIT编译线程
+            long start = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+            for (int i = 0; i < iterations; i++) {
+                compressedLength = compressor.compress(payload, 0, payload.length, compressed, 0);
+            }
+            long middle = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+            for (int i = 0; i < iterations; i++) {
+                compressor.decompress(compressed, 0, compressedLength, output, 0, payload.length);
+            }
+            compressNanos = middle - start;
+            decompressNanos = THREAD_MX_BEAN.getCurrentThreadCpuTime() - middle;
+        }
+        if (!Arrays.equals(payload, output)) {
+            throw new IllegalStateException("解压结果与原始数据不一致: " + compressor.getClass().getSimpleName());
+        }
+        double megabytes = (double) payload.length * iterations / (1024 * 1024);
+        // 一次压缩加一次解压的CPU时间内节省的字节数，为负数时说明压缩只增加了开销
+        double cpuMillisPerMessage = (compressNanos + decompressNanos) / 1e6 / iterations;
+        double savedKilobytes = (payload.length - 4 - compressedLength) / 1024.0;
+        System.out.printf("%-7s %8d %-7s %6.2f %10.0f %10.0f %12.1f%n",
+                type, payload.length, compressor.getClass().getSimpleName().replace("Compressor", ""),
+                (double) compressedLength / payload.length,
+                megabytes / (compressNanos / 1e9), megabytes / (decompressNanos / 1e9),
+                savedKilobytes / cpuMillisPerMessage);
+    }
+
+    /**
+     * 生成大约指定大小的消息体：序列化后的对象列表截取到指定长度，或随机字节
+     */
+    private static byte[] payload(String type, int size) {
+        Random random = new Random(size);
+        byte[] bytes;
+        if ("random".equals(type)) {
+            bytes = new byte[size];
+            random.nextBytes(bytes);
+            return bytes;
+        }
+        CommonSerializer serializer = CommonSerializer.getByCode(
+                "kryo".equals(type) ? CommonSerializer.KRYO_SERIALIZER : CommonSerializer.JSON_SERIALIZER);
+        List<HelloObject> objects = new ArrayList<>();
+        do {
+            for (int i = 0; i < 64; i++) {
+                StringBuilder message = new StringBuilder();
+                for (int w = 0; w < 4 + random.nextInt(8); w++) {
+                    message.append(WORDS[random.nextInt(WORDS.length)]).append(w % 3 == 0 ? '=' : ' ')
+                            .append(random.nextInt(10000)).append(';');
+                }
+                objects.add(new HelloObject(random.nextInt(1000000), message.toString()));
+            }
+            bytes = serializer.serialize(RpcResponse.success(objects, 1L));
+        } while (bytes.length < size);
+        return Arrays.copyOf(bytes, size);
+    }
+}
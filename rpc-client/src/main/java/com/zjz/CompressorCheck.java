@@ -0,0 +1,165 @@
+package com.zjz;
+
+import com.zjz.compress.Compressor;
+import com.zjz.exception.RpcException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 压缩算法的正确性检查，不依赖外部服务，可以直接运行，发现问题时抛出异常：
+ * <ul>
+ *     <li>往返：各种大小和内容（随机、全零、重复文本、短距离与长距离重复）的数据压缩后解压得到原数据，
+ *     输入和输出都放在数组中间，检查解压没有写到输出范围之外；</li>
+ *     <li>损坏数据：随机改写、截断和追加压缩数据后解压，只允许正常返回或抛出{@link RpcException}，
+ *     不允许其他异常，也不允许写到输出范围之外。</li>
+ * </ul>
+ * 可以通过参数指定随机种子和损坏数据的轮数，默认使用固定种子，结果可以重现。
+ */
+public class CompressorCheck {
+
+    private static final int[] COMPRESSORS = {Compressor.GZIP_COMPRESSOR, Compressor.SNAPPY_COMPRESSOR, Compressor.LZ4_COMPRESSOR};
+    private static final int[] SIZES = {0, 1, 4, 5, 12, 13, 15, 16, 17, 63, 64, 65, 100, 255, 256, 1000, 4096,
+            65535, 65536, 65537, 300_000, 1024 * 1024};
+    // 数组两端的保护区，检查读写没有越界
+    private static final int GUARD = 16;
+    private static final byte GUARD_BYTE = (byte) 0xA5;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 42;
+        int fuzzRounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        Random random = new Random(seed);
+        for (int code : COMPRESSORS) {
+            Compressor compressor = Compressor.getByCode(code);
+            String name = compressor.getClass().getSimpleName();
+            int cases = 0;
+            for (int size : SIZES) {
+                for (String type : new String[]{"random", "zeros", "text", "short-repeat", "long-repeat"}) {
+                    roundTrip(compressor, data(type, size, random), name + " " + type + " size=" + size);
+                    cases++;
+                }
+            }
+            int rejected = 0;
+            for (int i = 0; i < fuzzRounds; i++) {
+                byte[] original = data(i % 2 == 0 ? "text" : "short-repeat", 1 + random.nextInt(8192), random);
+                rejected += fuzz(compressor, original, random, name + " fuzz#" + i) ? 1 : 0;
+            }
+            System.out.printf("%-20s round-trip cases=%d, corrupted inputs=%d (rejected %d)%n", name, cases, fuzzRounds, rejected);
+        }
+        System.out.println("压缩算法检查通过");
+    }
+
+    private static void roundTrip(Compressor compressor, byte[] original, String name) {
+        byte[] compressed = compress(compressor, original);
+        byte[] output = guarded(original.length);
+        compressor.decompress(compressed, GUARD, compressed.length - 2 * GUARD, output, GUARD, original.length);
+        checkGuard(output, original.length, name);
+        if (!Arrays.equals(Arrays.copyOfRange(output, GUARD, GUARD + original.length), original)) {
+            throw new IllegalStateException("解压结果与原数据不一致: " + name);
+        }
+    }
+
+    /**
+     * 损坏压缩数据后解压
+     *
+     * @return 是否被识别为损坏的数据
+     */
+    private static boolean fuzz(Compressor compressor, byte[] original, Random random, String name) {
+        byte[] compressed = compress(compressor, original);
+        int length = compressed.length - 2 * GUARD;
+        byte[] corrupted = Arrays.copyOf(compressed, compressed.length);
+        switch (random.nextInt(3)) {
+            case 0:
+                // 随机改写若干字节
+                for (int i = 1 + random.nextInt(4); i > 0 && length > 0; i--) {
+                    corrupted[GUARD + random.nextInt(length)] = (byte) random.nextInt(256);
+                }
+                break;
+            case 1:
+                // 截断，之后的字节仍是保护区，不能被读入
+                length = length == 0 ? 0 : random.nextInt(length);
+                break;
+            default:
+                // 追加随机字节
+                int extra = 1 + random.nextInt(GUARD);
+                for (int i = 0; i < extra; i++) {
+                    corrupted[GUARD + length + i] = (byte) random.nextInt(256);
+                }
+                length += extra;
+        }
+        byte[] output = guarded(original.length);
+        try {
+            compressor.decompress(corrupted, GUARD, length, output, GUARD, original.length);
+            return false;
+        } catch (RpcException e) {
+            return true;
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("损坏的数据引发了非预期的异常: " + name, e);
+        } finally {
+            checkGuard(output, original.length, name);
+        }
+    }
+
+    /**
+     * @return 压缩结果，两端各有GUARD字节的保护区
+     */
+    private static byte[] compress(Compressor compressor, byte[] original) {
+        byte[] input = new byte[original.length + 2 * GUARD];
+        System.arraycopy(original, 0, input, GUARD, original.length);
+        byte[] output = guarded(compressor.maxCompressedLength(original.length));
+        int length = compressor.compress(input, GUARD, original.length, output, GUARD);
+        checkGuard(output, output.length - 2 * GUARD, "压缩");
+        byte[] compressed = guarded(length);
+        System.arraycopy(output, GUARD, compressed, GUARD, length);
+        return compressed;
+    }
+
+    private static byte[] guarded(int length) {
+        byte[] bytes = new byte[length + 2 * GUARD];
+        Arrays.fill(bytes, GUARD_BYTE);
+        return bytes;
+    }
+
+    private static void checkGuard(byte[] bytes, int length, String name) {
+        for (int i = 0; i < GUARD; i++) {
+            if (bytes[i] != GUARD_BYTE || bytes[GUARD + length + i] != GUARD_BYTE) {
+                throw new IllegalStateException("写到了输出范围之外: " + name);
+            }
+        }
+    }
+
+    private static byte[] data(String type, int size, Random random) {
+        byte[] bytes = new byte[size];
+        switch (type) {
+            case "random":
+                random.nextBytes(bytes);
+                break;
+            case "zeros":
+                break;
+            case "text":
+                byte[] text = "{\"order\":12345,\"status\":\"PAID\",\"address\":\"Beijing\",\"items\":[1,2,3]}"
+                        .getBytes(StandardCharsets.UTF_8);
+                for (int i = 0; i < size; i++) {
+                    bytes[i] = text[(i + random.nextInt(3) / 2) % text.length];
+                }
+                break;
+            case "short-repeat":
+                // 短周期重复，产生偏移量小于匹配长度的重叠复制
+                int period = 1 + random.nextInt(7);
+                for (int i = 0; i < size; i++) {
+                    bytes[i] = i < period ? (byte) random.nextInt(256) : bytes[i - period];
+                }
+                break;
+            default:
+                // 随机块在远处重复，产生接近最大偏移量的匹配
+                int block = Math.min(size, 70_000);
+                byte[] head = new byte[block];
+                random.nextBytes(head);
+                for (int i = 0; i < size; i++) {
+                    bytes[i] = head[i % block];
+                }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,135 @@
+package com.zjz;
+
+import com.zjz.codec.CommonDecoder;
+import com.zjz.codec.CommonEncoder;
+import com.zjz.entity.RpcResponse;
+import com.zjz.serializer.CommonSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.util.Random;
+
+/**
+ * {@link CommonDecoder}的基准测试：把编码好的响应帧按固定大小切成若干段（模拟每次从套接字读到的数据，大帧会跨越多次读取）
+ * 依次交给解码器，输出1KB、64KB、1MB三种消息体的解码吞吐量。
+ * 同时给出对照组：同样的帧先把消息体复制到新的字节数组再反序列化，即改为直接从ByteBuf读取之前的做法。
+ * 可以通过参数指定序列化器编号（默认使用Kryo），以及读缓冲区使用堆外内存（direct，默认）还是堆内存（heap）。
+ */
+public class DecoderBenchmark {
+
+    private static final int[] PAYLOAD_SIZES = {1024, 64 * 1024, 1024 * 1024};
+    // 每次交给解码器的数据大小
+    private static final int READ_SIZE = 16 * 1024;
+    // 每轮解码的总数据量，决定消息条数
+    private static final long BYTES_PER_ROUND = 128L * 1024 * 1024;
+    private static final int WARMUP_ROUNDS = 2;
+    // v1帧头长度
+    private static final int HEADER_LENGTH = 24;
+
+    private static boolean directReadBuffer;
+
+    public static void main(String[] args) {
+        CommonSerializer serializer = CommonSerializer.getByCode(args.length > 0 ? Integer.parseInt(args[0]) : CommonSerializer.KRYO_SERIALIZER);
+        directReadBuffer = args.length <= 1 || !"heap".equals(args[1]);
+        System.out.printf("%8s %7s %12s %10s %14s%n", "payload", "frames", "decoder MB/s", "msg/s", "copy+deser MB/s");
+        for (int size : PAYLOAD_SIZES) {
+            String payload = payload(size);
+            int messages = (int) Math.max(100, BYTES_PER_ROUND / size);
+            ByteBuf frames = encode(serializer, payload, messages);
+            long decoderNanos = 0;
+            long copyNanos = 0;
+            for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                decoderNanos = decode(frames, messages, size);
+                copyNanos = copyAndDeserialize(frames, serializer, messages, size);
+            }
+            double megabytes = (double) size * messages / (1024 * 1024);
+            System.out.printf("%8d %7d %12.0f %10.0f %14.0f%n", size, messages,
+                    megabytes / (decoderNanos / 1e9), messages / (decoderNanos / 1e9), megabytes / (copyNanos / 1e9));
+            frames.release();
+        }
+    }
+
+    /**
+     * 用{@link CommonEncoder}把消息编码为连续的帧，放在一个池化的堆外缓冲区中
+     */
+    private static ByteBuf encode(CommonSerializer serializer, String payload, int messages) {
+        EmbeddedChannel encoder = new EmbeddedChannel(new CommonEncoder(serializer));
+        ByteBuf frames = PooledByteBufAllocator.DEFAULT.directBuffer();
+        for (int i = 0; i < messages; i++) {
+            encoder.writeOutbound(RpcResponse.success(payload, i));
+            ByteBuf frame = encoder.readOutbound();
+            frames.writeBytes(frame);
+            frame.release();
+        }
+        encoder.finish();
+        return frames;
+    }
+
+    /**
+     * 把帧按READ_SIZE切段交给解码器，边交边取出解码结果并校验，耗时包括把每段数据复制到读缓冲区
+     *
+     * @return 耗时，单位纳秒
+     */
+    private static long decode(ByteBuf frames, int messages, int size) {
+        EmbeddedChannel decoder = new EmbeddedChannel(new CommonDecoder());
+        int decoded = 0;
+        long start = System.nanoTime();
+        for (int index = 0; index < frames.writerIndex(); index += READ_SIZE) {
+            int length = Math.min(READ_SIZE, frames.writerIndex() - index);
+            // 与从套接字读取时一样，每段数据放在新分配的池化缓冲区中
+            ByteBuf read = directReadBuffer
+                    ? PooledByteBufAllocator.DEFAULT.directBuffer(length) : PooledByteBufAllocator.DEFAULT.heapBuffer(length);
+            decoder.writeInbound(read.writeBytes(frames, index, length));
+            Object msg;
+            while ((msg = decoder.readInbound()) != null) {
+                check(msg, decoded++, size);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        decoder.finish();
+        if (decoded != messages) {
+            throw new IllegalStateException("解码的消息数不正确: " + decoded);
+        }
+        return elapsed;
+    }
+
+    /**
+     * 对照组：逐帧把消息体复制到新的字节数组再反序列化
+     *
+     * @return 耗时，单位纳秒
+     */
+    private static long copyAndDeserialize(ByteBuf frames, CommonSerializer serializer, int messages, int size) {
+        long start = System.nanoTime();
+        int index = 0;
+        for (int i = 0; i < messages; i++) {
+            int length = frames.getInt(index + HEADER_LENGTH - 4);
+            byte[] body = ByteBufUtil.getBytes(frames, index + HEADER_LENGTH, length);
+            RpcResponse<?> response = (RpcResponse<?>) serializer.deserialize(body, RpcResponse.class);
+            response.setRequestId(frames.getLong(index + HEADER_LENGTH - 12));
+            check(response, i, size);
+            index += HEADER_LENGTH + length;
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 随机字母组成的字符串，各个序列化器都能原样还原，序列化后的大小约为指定的字节数
+     */
+    private static String payload(int size) {
+        Random random = new Random(size);
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    private static void check(Object obj, long expectedId, int expectedSize) {
+        RpcResponse<?> response = (RpcResponse<?>) obj;
+        if (response.getRequestId() != expectedId || ((String) response.getData()).length() != expectedSize) {
+            throw new IllegalStateException("消息不完整: requestId=" + response.getRequestId());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.zjz;
+
+import com.zjz.entity.RpcRequest;
+import com.zjz.loadbalancer.ActiveCounter;
+import com.zjz.loadbalancer.ConsistentHashLoadBalancer;
+import com.zjz.loadbalancer.LeastActiveLoadBalancer;
+import com.zjz.loadbalancer.LoadBalancer;
+import com.zjz.loadbalancer.RandomLoadBalancer;
+import com.zjz.loadbalancer.WeightedRoundRobinLoadBalancer;
+import com.zjz.netty.client.NettyClient;
+import com.zjz.netty.client.NettyClientConfig;
+import com.zjz.netty.server.NettyServer;
+import com.zjz.registry.LocalServiceDiscovery;
+import com.zjz.registry.LocalServiceRegistry;
+import com.zjz.registry.ServiceDiscovery;
+import com.zjz.serializer.CommonSerializer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 负载均衡策略的分布测试：在同一进程中启动多个服务端作为服务提供者，通过{@link LocalServiceRegistry}注册，
+ * 客户端用各个策略发出完整的调用，统计每个提供者收到的调用数并检查分布是否符合策略：
+ * 随机策略每个提供者都分到调用；加权轮询按权重1:1:2:4精确分配；
+ * 最少活跃调用避开有大量进行中调用的提供者；一致性哈希使相同参数的调用总是落在同一个提供者上，不同参数分散到多个提供者。
+ * 同一进程中的服务端共用服务实现，无法从响应区分提供者，因此在客户端记录每次调用选中的地址。
+ * 不依赖Nacos，可以直接运行，分布不符合时抛出异常。
+ */
+public class LoadBalancerTest {
+
+    private static final String HOST = "127.0.0.1";
+    private static final double[] WEIGHTS = {1, 1, 2, 4};
+    private static final int CALLS = 800;
+    // 最少活跃调用测试中被占满的提供者及其进行中的调用数
+    private static final int BUSY_PROVIDER = 0;
+    private static final int BUSY_ACTIVE = 8;
+
+    public static void main(String[] args) {
+        // 服务端线程不会自行退出，结束时显式退出进程；失败时以非0状态退出
+        try {
+            run();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private static void run() throws Exception {
+        LocalServiceRegistry registry = new LocalServiceRegistry();
+        List<InetSocketAddress> providers = new ArrayList<>();
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            int port = freePort();
+            startProvider(registry, i, port);
+            providers.add(new InetSocketAddress(HOST, port));
+        }
+        String serviceName = HelloService.class.getCanonicalName();
+        for (int i = 0; i < providers.size(); i++) {
+            awaitListening(providers.get(i).getPort());
+            // 服务端注册时权重为1，按测试需要更新权重
+            registry.register(serviceName, providers.get(i), WEIGHTS[i]);
+        }
+
+        int[] random = count(new RandomLoadBalancer(), registry, providers, false);
+        for (int n : random) {
+            check(n > CALLS / WEIGHTS.length / 2, "随机策略分布不均");
+        }
+
+        int[] weighted = count(new WeightedRoundRobinLoadBalancer(), registry, providers, false);
+        double totalWeight = 0;
+        for (double weight : WEIGHTS) {
+            totalWeight += weight;
+        }
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            check(weighted[i] == (int) (CALLS * WEIGHTS[i] / totalWeight), "加权轮询没有按权重分配");
+        }
+
+        // 模拟一个提供者上积压了进行中的调用
+        InetSocketAddress busy = providers.get(BUSY_PROVIDER);
+        for (int i = 0; i < BUSY_ACTIVE; i++) {
+            ActiveCounter.begin(busy);
+        }
+        int[] leastActive;
+        try {
+            leastActive = count(new LeastActiveLoadBalancer(), registry, providers, false);
+        } finally {
+            for (int i = 0; i < BUSY_ACTIVE; i++) {
+                ActiveCounter.end(busy);
+            }
+        }
+        check(leastActive[BUSY_PROVIDER] == 0, "最少活跃调用没有避开积压的提供者");
+        int idle = 0;
+        for (int n : leastActive) {
+            idle += n > 0 ? 1 : 0;
+        }
+        check(idle == providers.size() - 1, "最少活跃调用没有分散到其他提供者");
+
+        int[] consistentHash = count(new ConsistentHashLoadBalancer(), registry, providers, true);
+        int used = 0;
+        for (int n : consistentHash) {
+            used += n > 0 ? 1 : 0;
+        }
+        check(used >= 3, "一致性哈希没有把不同的请求键分散到多个提供者");
+        System.out.println("负载均衡分布测试通过");
+    }
+
+    /**
+     * 启动一个提供者；publishService会阻塞，因此在单独的线程中运行
+     */
+    private static void startProvider(LocalServiceRegistry registry, int index, int port) {
+        Thread thread = new Thread(() -> new NettyServer(HOST, port, CommonSerializer.KRYO_SERIALIZER, registry)
+                .publishService((HelloService) helloObject -> "provider-" + index, HelloService.class), "provider-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 用指定策略发出调用，统计每个提供者收到的调用数
+     *
+     * @param sameKeyTwice 为true时每个参数调用两次，并检查两次落在同一个提供者上
+     */
+    private static int[] count(LoadBalancer loadBalancer, LocalServiceRegistry registry, List<InetSocketAddress> providers,
+                               boolean sameKeyTwice) {
+        List<InetSocketAddress> selected = new ArrayList<>();
+        ServiceDiscovery discovery = new LocalServiceDiscovery(registry, loadBalancer);
+        // 记录每次调用选中的地址，调用本身照常发往该地址
+        ServiceDiscovery recording = new ServiceDiscovery() {
+            @Override
+            public InetSocketAddress lookupService(String serviceName) {
+                return lookupService(serviceName, null);
+            }
+
+            @Override
+            public InetSocketAddress lookupService(String serviceName, RpcRequest rpcRequest) {
+                InetSocketAddress address = discovery.lookupService(serviceName, rpcRequest);
+                selected.add(address);
+                return address;
+            }
+        };
+        NettyClient client = new NettyClient(CommonSerializer.KRYO_SERIALIZER, recording, NettyClientConfig.defaultConfig());
+        HelloService service = new RpcClientProxy(client).getProxy(HelloService.class);
+        int[] counts = new int[providers.size()];
+        Map<Integer, Integer> firstProvider = new HashMap<>();
+        try {
+            for (int i = 0; i < CALLS; i++) {
+                int key = sameKeyTwice ? i / 2 : i;
+                check(service.sayHello(new HelloObject(key, "key")) != null, "调用没有返回结果");
+                int provider = providers.indexOf(selected.get(selected.size() - 1));
+                counts[provider]++;
+                if (sameKeyTwice) {
+                    Integer first = firstProvider.putIfAbsent(key, provider);
+                    check(first == null || first == provider, "一致性哈希中相同的请求键落在了不同的提供者上");
+                }
+            }
+        } finally {
+            client.close();
+        }
+        System.out.printf("%-32s %s%n", loadBalancer.getClass().getSimpleName(), Arrays.toString(counts));
+        return counts;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitListening(int port) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            try (Socket ignored = new Socket(HOST, port)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("提供者没有启动: " + port);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.zjz;
+
+import com.zjz.provider.MethodInvoker;
+
+import java.lang.reflect.Method;
+
+/**
+ * 服务端方法调用方式的基准测试：比较预先绑定的{@link MethodInvoker}（MethodHandle）与每次调用{@link Method#invoke}，
+ * 并以直接的接口调用作为基线，输出每次调用的平均耗时。
+ * 分别测试只调用一个服务实现，以及轮流调用多个服务实现（与服务端发布了多个服务时的调用点相同）两种情况。
+ * 每种方式先预热若干轮让JIT完成编译，再取最后一轮的结果；调用结果累加到一个校验值中，避免调用被JIT消除。
+ */
+public class MethodInvokerBenchmark {
+
+    private static final int ITERATIONS = 20_000_000;
+    private static final int WARMUP_ROUNDS = 3;
+    // 轮流调用的服务实现数量
+    private static final int SERVICE_COUNT = 8;
+
+    // 防止调用结果被优化掉
+    private static long sink;
+
+    public static void main(String[] args) throws Throwable {
+        Method method = HelloService.class.getMethod("sayHello", HelloObject.class);
+        HelloService[] services = services();
+        MethodInvoker[] invokers = new MethodInvoker[services.length];
+        for (int i = 0; i < services.length; i++) {
+            invokers[i] = new MethodInvoker(services[i], method);
+        }
+        Object[] callArgs = {new HelloObject(1, "hello")};
+
+        for (int serviceCount : new int[]{1, SERVICE_COUNT}) {
+            System.out.printf("services=%d%n%-14s %10s%n", serviceCount, "invoker", "ns/call");
+            for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                long direct = direct(services, serviceCount, (HelloObject) callArgs[0]);
+                long handle = methodInvoker(invokers, serviceCount, callArgs);
+                long reflection = reflection(services, serviceCount, method, callArgs);
+                if (round == WARMUP_ROUNDS) {
+                    print("direct", direct);
+                    print("MethodInvoker", handle);
+                    print("Method.invoke", reflection);
+                }
+            }
+        }
+        System.out.println("checksum=" + sink);
+    }
+
+    /**
+     * 创建多个不同类的服务实现，使调用点看到多种接收者类型；每个lambda表达式生成一个单独的类，方法体相同以保证工作量一致
+     */
+    private static HelloService[] services() {
+        return new HelloService[]{
+                o -> o.getMessage(), o -> o.getMessage(), o -> o.getMessage(), o -> o.getMessage(),
+                o -> o.getMessage(), o -> o.getMessage(), o -> o.getMessage(), o -> o.getMessage()
+        };
+    }
+
+    private static long direct(HelloService[] services, int count, HelloObject arg) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += services[i % count].sayHello(arg).length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long methodInvoker(MethodInvoker[] invokers, int count, Object[] args) throws Throwable {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += ((String) invokers[i % count].invoke(args)).length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long reflection(HelloService[] services, int count, Method method, Object[] args) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += ((String) method.invoke(services[i % count], args)).length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void print(String name, long elapsedNanos) {
+        System.out.printf("%-14s %10.2f%n", name, (double) elapsedNanos / ITERATIONS);
+    }
+}
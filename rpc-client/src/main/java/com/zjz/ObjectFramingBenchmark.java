@@ -0,0 +1,74 @@
+package com.zjz;
+
+import com.zjz.entity.RpcResponse;
+import com.zjz.serializer.CommonSerializer;
+import com.zjz.utils.ObjectReader;
+import com.zjz.utils.ObjectWriter;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * ObjectWriter/ObjectReader的分帧基准测试：通过本机回环连接收发不同大小的响应，
+ * 校验每条消息都完整读取，并输出每种大小的吞吐量。
+ * 可以通过参数指定序列化器编号，默认使用Kryo。
+ */
+public class ObjectFramingBenchmark {
+
+    // 消息数据的大小，从1KB到8MB
+    private static final int[] PAYLOAD_SIZES = {1024, 16 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024, 8 * 1024 * 1024};
+    // 每种大小传输的总数据量，决定消息条数
+    private static final long BYTES_PER_ROUND = 256L * 1024 * 1024;
+    private static final int WARMUP_MESSAGES = 20;
+
+    public static void main(String[] args) throws Exception {
+        CommonSerializer serializer = CommonSerializer.getByCode(args.length > 0 ? Integer.parseInt(args[0]) : CommonSerializer.KRYO_SERIALIZER);
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket sender = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+             Socket receiver = serverSocket.accept()) {
+            sender.setTcpNoDelay(true);
+            OutputStream out = sender.getOutputStream();
+            InputStream in = new BufferedInputStream(receiver.getInputStream());
+            for (int size : PAYLOAD_SIZES) {
+                byte[] payload = new byte[size];
+                Arrays.fill(payload, (byte) 'x');
+                int messages = (int) Math.max(WARMUP_MESSAGES, BYTES_PER_ROUND / size);
+                // 发送在单独的线程中进行，避免双方互相等待套接字缓冲区
+                Thread writer = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < WARMUP_MESSAGES + messages; i++) {
+                            ObjectWriter.writeObject(out, RpcResponse.success(payload, i), serializer);
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                writer.start();
+                for (int i = 0; i < WARMUP_MESSAGES; i++) {
+                    check(ObjectReader.readObject(in), i, size);
+                }
+                long start = System.nanoTime();
+                for (int i = WARMUP_MESSAGES; i < WARMUP_MESSAGES + messages; i++) {
+                    check(ObjectReader.readObject(in), i, size);
+                }
+                long elapsedNanos = System.nanoTime() - start;
+                writer.join();
+                double seconds = elapsedNanos / 1e9;
+                System.out.printf("payload=%8d bytes  messages=%6d  %10.0f msg/s  %8.1f MB/s%n",
+                        size, messages, messages / seconds, (double) size * messages / seconds / (1024 * 1024));
+            }
+        }
+    }
+
+    private static void check(Object obj, long expectedId, int expectedSize) {
+        RpcResponse<?> response = (RpcResponse<?>) obj;
+        if (response.getRequestId() != expectedId || ((byte[]) response.getData()).length != expectedSize) {
+            throw new IllegalStateException("消息不完整: requestId=" + response.getRequestId());
+        }
+    }
+}
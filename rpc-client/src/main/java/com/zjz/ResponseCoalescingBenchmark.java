@@ -0,0 +1,139 @@
+package com.zjz;
+
+import com.zjz.entity.RpcRequest;
+import com.zjz.netty.client.NettyClient;
+import com.zjz.netty.client.NettyClientConfig;
+import com.zjz.netty.server.NettyServer;
+import com.zjz.netty.server.NettyServerConfig;
+import com.zjz.registry.LocalServiceRegistry;
+import com.zjz.serializer.CommonSerializer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务端响应合并写出的吞吐量基准测试：客户端只使用一条连接，保持指定数量的调用同时在途，
+ * 分别对开启和关闭{@link NettyServerConfig#isCoalesceResponses()}的服务端测量每秒完成的调用数。
+ * 在途调用越多，同一时刻就绪的响应越多，合并写出节省的任务提交和flush越多。
+ * 服务端在同一进程中启动，每个在途数量先预热一轮再计时。
+ * 每次调用都会输出INFO日志，运行时应把日志级别调到WARN（slf4j-simple：-Dorg.slf4j.simpleLogger.defaultLogLevel=warn），
+ * 否则测到的主要是日志的开销；客户端、服务端和业务线程需要多个CPU核才能体现合并的效果。
+ */
+public class ResponseCoalescingBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+    // 同时在途的调用数
+    private static final int[] IN_FLIGHT = {1, 16, 128, 1024};
+    // 每轮计时的时长
+    private static final long ROUND_MILLIS = 3000;
+
+    public static void main(String[] args) {
+        // 服务端线程不会自行退出，结束时显式退出进程；失败时以非0状态退出
+        try {
+            run();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private static void run() throws Exception {
+        InetSocketAddress coalescing = startServer(true);
+        InetSocketAddress flushEach = startServer(false);
+        System.out.printf("%9s %16s %16s %7s%n", "in-flight", "coalesce calls/s", "flush-each calls/s", "ratio");
+        for (int inFlight : IN_FLIGHT) {
+            double coalesced = throughput(coalescing, inFlight);
+            double flushed = throughput(flushEach, inFlight);
+            System.out.printf("%9d %16.0f %16.0f %7.2f%n", inFlight, coalesced, flushed, coalesced / flushed);
+        }
+    }
+
+    /**
+     * 启动一个服务端，publishService会阻塞，因此在单独的线程中运行
+     *
+     * @return 服务端地址
+     */
+    private static InetSocketAddress startServer(boolean coalesce) throws Exception {
+        int port = freePort();
+        NettyServerConfig config = NettyServerConfig.builder().coalesceResponses(coalesce).build();
+        Thread thread = new Thread(() -> new NettyServer(HOST, port, CommonSerializer.KRYO_SERIALIZER,
+                new LocalServiceRegistry(), config)
+                .publishService((HelloService) HelloObject::getMessage, HelloService.class), "server-" + port);
+        thread.setDaemon(true);
+        thread.start();
+        awaitListening(port);
+        return new InetSocketAddress(HOST, port);
+    }
+
+    /**
+     * 在一条连接上保持inFlight个调用在途，先预热一轮，再返回计时一轮的每秒调用数
+     */
+    private static double throughput(InetSocketAddress address, int inFlight) throws Exception {
+        NettyClientConfig config = NettyClientConfig.builder().connectionsPerEndpoint(1).build();
+        NettyClient client = new NettyClient(CommonSerializer.KRYO_SERIALIZER, serviceName -> address, config);
+        try {
+            round(client, inFlight);
+            return round(client, inFlight);
+        } finally {
+            client.close();
+        }
+    }
+
+    private static double round(NettyClient client, int inFlight) throws InterruptedException {
+        Semaphore window = new Semaphore(inFlight);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(ROUND_MILLIS);
+        while (System.nanoTime() < end) {
+            window.acquire();
+            client.sendRequestAsync(request()).whenComplete((result, e) -> {
+                if (e != null) {
+                    failed.incrementAndGet();
+                } else {
+                    completed.incrementAndGet();
+                }
+                window.release();
+            });
+        }
+        // 等待在途的调用全部完成
+        window.acquire(inFlight);
+        long elapsed = System.nanoTime() - start;
+        if (failed.get() > 0) {
+            throw new IllegalStateException("调用失败: " + failed.get());
+        }
+        return completed.get() / (elapsed / 1e9);
+    }
+
+    private static RpcRequest request() {
+        return RpcRequest.builder()
+                .interfaceName(HelloService.class.getCanonicalName())
+                .methodName("sayHello")
+                .parameters(new Object[]{new HelloObject(1, "hello")})
+                .paramTypes(new Class<?>[]{HelloObject.class})
+                .build();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitListening(int port) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            try (Socket ignored = new Socket(HOST, port)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("服务端没有启动: " + port);
+    }
+}
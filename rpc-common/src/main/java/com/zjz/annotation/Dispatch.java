@@ -0,0 +1,20 @@
+package com.zjz.annotation;
+
+import com.zjz.enums.DispatchMode;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 指定服务在服务端的执行方式，可以标注在服务接口或服务实现类上，接口上的优先。
+ * 未标注的服务使用服务端配置的默认执行方式。
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Dispatch {
+    DispatchMode value();
+}
@@ -0,0 +1,21 @@
+package com.zjz.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 指定服务接口方法的调用超时时间，标注在接口方法上，客户端代理调用该方法时使用。
+ * 未标注的方法使用客户端配置的默认超时时间。
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Timeout {
+    /**
+     * 超时时间，单位毫秒
+     */
+    long value();
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * 消费者向提供者发送的请求对象
@@ -16,9 +17,9 @@ import java.io.Serializable;
 public class RpcRequest implements Serializable {
 
     /**
-     * 请求号
+     * 请求号，由发送请求的连接按顺序分配，随帧头传输而不参与消息体序列化
      */
-    private String requestId;
+    private transient long requestId;
 
     /**
      * 待调用接口名称
@@ -39,5 +40,16 @@ public class RpcRequest implements Serializable {
      * 调用方法的参数类型
      */
     private Class<?>[] paramTypes;
+
+    /**
+     * 调用的剩余超时时间，单位毫秒，由客户端在发送时按截止时间计算，0表示不限制。
+     * 服务端在执行前检查，已经超时的请求不再执行
+     */
+    private long timeoutMillis;
+
+    /**
+     * 附加信息，如调用链路标识等，随帧头传输而不参与消息体序列化，只有v2协议支持，可以为null
+     */
+    private transient Map<String, String> attachments;
     public RpcRequest() {}
 }
\ No newline at end of file
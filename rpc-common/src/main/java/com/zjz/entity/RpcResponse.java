@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
+import java.util.Map;
 /**
  * RpcResponse 类用于封装 RPC 调用的响应结果。
  * @param <T> 响应数据的类型。
@@ -15,21 +16,26 @@ import java.io.Serializable;
 @NoArgsConstructor
 public class RpcResponse<T> implements Serializable {
     /**
-     * 响应对应的请求号
+     * 响应对应的请求号，随帧头传输而不参与消息体序列化
      */
-    private String requestId;
+    private transient long requestId;
     private Integer statusCode; // 响应状态码
     private String message; // 响应消息
 
     private T data; // 响应携带的数据
 
+    /**
+     * 附加信息，随帧头传输而不参与消息体序列化，只有v2协议支持，可以为null
+     */
+    private transient Map<String, String> attachments;
+
     /**
      * 创建一个表示成功的 RpcResponse 实例。
      * @param data 成功时返回的数据。
      * @param <T> 数据的类型。
      * @return 返回一个填充了成功状态码、消息和数据的 RpcResponse 实例。
      */
-    public static <T> RpcResponse<T> success(T data, String requestId) {
+    public static <T> RpcResponse<T> success(T data, long requestId) {
         RpcResponse<T> response = new RpcResponse<T>();
         response.setStatusCode(ResponseCode.SUCCESS.getCode());
         response.setMessage(ResponseCode.SUCCESS.getMessage());
@@ -44,7 +50,7 @@ public class RpcResponse<T> implements Serializable {
      * @param <T> 数据的类型。
      * @return 返回一个填充了失败状态码和消息的 RpcResponse 实例。
      */
-    public static <T> RpcResponse<T> fail(ResponseCode code, String requestId) {
+    public static <T> RpcResponse<T> fail(ResponseCode code, long requestId) {
         RpcResponse<T> response = new RpcResponse<T>();
         response.setStatusCode(code.getCode());
         response.setMessage(code.getMessage());
@@ -0,0 +1,24 @@
+package com.zjz.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+/**
+ * 压缩算法编码枚举，用于在帧头中标识消息体使用的压缩算法。
+ */
+public enum CompressorCode {
+    // 不压缩
+    NONE(0),
+    // 使用gzip压缩的标识代码
+    GZIP(1),
+    // 使用Snappy压缩的标识代码
+    SNAPPY(2),
+    // 使用LZ4压缩的标识代码
+    LZ4(3);
+
+    // 压缩算法的标识码
+    private final int code;
+
+}
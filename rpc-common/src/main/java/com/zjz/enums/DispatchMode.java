@@ -0,0 +1,13 @@
+package com.zjz.enums;
+
+/**
+ * 服务端执行请求的方式
+ */
+public enum DispatchMode {
+    // 直接在IO线程中执行，只适用于不会阻塞的服务
+    DIRECT,
+    // 提交到有界的业务线程池执行，线程池满时立即返回服务端繁忙
+    POOL,
+    // 每个请求一个虚拟线程，需要JDK 21及以上，低版本JDK退化为POOL
+    VIRTUAL
+}
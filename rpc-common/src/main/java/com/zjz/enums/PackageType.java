@@ -8,7 +8,13 @@ import lombok.Getter;
 public enum PackageType {
 
     REQUEST_PACK(0),
-    RESPONSE_PACK(1);
+    RESPONSE_PACK(1),
+    // 批量包，一帧中依次包含多个请求或响应
+    BATCH_REQUEST_PACK(2),
+    BATCH_RESPONSE_PACK(3),
+    // 心跳包，只有帧头没有数据部分
+    HEARTBEAT_PING(4),
+    HEARTBEAT_PONG(5);
 
     private final int code;
 
@@ -14,7 +14,10 @@ public enum ResponseCode {
     SUCCESS(200,"调用方法成功"),
     FAIL(500,"调用方法失败"),
     METHOD_NOT_FOUND(500,"未找到指定方法"),
-    CLASS_NOT_FOUND(500,"未找到指定类");
+    CLASS_NOT_FOUND(500,"未找到指定类"),
+    SERVER_BUSY(503,"服务端繁忙，请求被拒绝"),
+    TOO_MANY_REQUESTS(429,"超过服务的并发限制，请求被拒绝"),
+    DEADLINE_EXCEEDED(504,"请求在执行前已经超时");
     private final int code;
     private final String message;
 
@@ -16,7 +16,12 @@ public enum RpcError {
     UNKNOWN_PROTOCOL("未知的协议"),
     UNKNOWN_SERIALIZER("未知的序列化器"),
     SERIALIZER_NOT_FOUND("未发现该序列化器"),
-    RESPONSE_NOT_MATCH("响应与请求号不匹配");
+    UNKNOWN_COMPRESSOR("未知的压缩算法"),
+    DECOMPRESSION_FAILED("解压数据失败"),
+    RESPONSE_NOT_MATCH("响应与请求号不匹配"),
+    SERVICE_OVERLOADED("服务端过载，请求被拒绝"),
+    REQUEST_TIMEOUT("请求超时"),
+    CLIENT_CLOSED("客户端已关闭");
     private final String message;
 
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package com.zjz.factory;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 单例工厂类，用于创建并管理各个单例对象。
@@ -9,8 +9,8 @@ import java.util.Map;
  */
 public class SingletonFactory {
 
-    // 静态的map用于存储单例对象
-    private static Map<Class, Object> objectMap = new HashMap<>();
+    // 静态的map用于存储单例对象，可能被多个IO线程并发访问
+    private static final Map<Class, Object> objectMap = new ConcurrentHashMap<>();
 
     // 私有构造方法，防止外部实例化
     private SingletonFactory() {}
@@ -25,14 +25,17 @@ public class SingletonFactory {
      */
     public static <T> T getInstance(Class<T> clazz) {
         Object instance = objectMap.get(clazz); // 尝试从map中获取实例
-        synchronized (clazz) { // 对类对象加锁，保证线程安全
-            if(instance == null) { // 如果尚未实例化，则创建新实例
-                try {
-                    instance = clazz.newInstance(); // 使用无参构造方法创建实例
-                    objectMap.put(clazz, instance); // 将新实例存储到map中
-                } catch (IllegalAccessException | InstantiationException e) {
-                    // 如果创建实例过程中出现异常，则抛出运行时异常
-                    throw new RuntimeException(e.getMessage(), e);
+        if (instance == null) {
+            synchronized (clazz) { // 对类对象加锁，保证线程安全
+                instance = objectMap.get(clazz); // 加锁后再次检查，避免重复创建
+                if(instance == null) { // 如果尚未实例化，则创建新实例
+                    try {
+                        instance = clazz.newInstance(); // 使用无参构造方法创建实例
+                        objectMap.put(clazz, instance); // 将新实例存储到map中
+                    } catch (IllegalAccessException | InstantiationException e) {
+                        // 如果创建实例过程中出现异常，则抛出运行时异常
+                        throw new RuntimeException(e.getMessage(), e);
+                    }
                 }
             }
         }
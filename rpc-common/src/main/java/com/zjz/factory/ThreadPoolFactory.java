@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
 @Slf4j
 public class ThreadPoolFactory {
     /**
@@ -17,6 +18,8 @@ public class ThreadPoolFactory {
 
     // 线程池映射，用于存储线程池实例
     private static Map<String, ExecutorService> threadPollsMap = new ConcurrentHashMap<>();
+    // 当前JDK是否支持虚拟线程，首次尝试失败后不再尝试
+    private static volatile boolean virtualThreadSupported = true;
     private ThreadPoolFactory() {
         // 私有构造函数，防止实例化
     }
@@ -49,6 +52,71 @@ public class ThreadPoolFactory {
         return pool;
     }
 
+    /**
+     * 创建指定大小的线程池，同一前缀和大小只创建一次，大小不同的调用方使用各自的线程池；已经关闭的线程池重新创建。
+     * 队列满且线程数达到最大值时提交任务会抛出RejectedExecutionException，由调用方决定如何处理过载。
+     *
+     * @param threadNamePrefix 线程名字前缀
+     * @param corePoolSize     核心线程数
+     * @param maximumPoolSize  最大线程数
+     * @param queueCapacity    队列容量
+     * @return ExecutorService 线程池实例
+     */
+    public static ExecutorService createThreadPool(String threadNamePrefix, int corePoolSize, int maximumPoolSize, int queueCapacity) {
+        String key = threadNamePrefix + "[" + corePoolSize + "," + maximumPoolSize + "," + queueCapacity + "]";
+        return getOrCreate(key, () -> new ThreadPoolExecutor(corePoolSize, maximumPoolSize,
+                KEEP_ALIVE_TIME, TimeUnit.MINUTES, new ArrayBlockingQueue<>(queueCapacity),
+                createThreadFactory(threadNamePrefix, false)));
+    }
+
+    /**
+     * 创建单线程的定时任务执行器，线程为守护线程，同一前缀只创建一次，已经关闭的执行器重新创建。
+     *
+     * @param threadNamePrefix 线程名字前缀
+     * @return ScheduledExecutorService 定时任务执行器实例
+     */
+    public static ScheduledExecutorService createScheduledThreadPool(String threadNamePrefix) {
+        return (ScheduledExecutorService) getOrCreate(threadNamePrefix,
+                () -> Executors.newSingleThreadScheduledExecutor(createThreadFactory(threadNamePrefix, true)));
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器，同一前缀只创建一次，已经关闭的执行器重新创建。
+     * 虚拟线程需要JDK 21及以上，这里通过反射调用以保持对低版本JDK的兼容。
+     *
+     * @param threadNamePrefix 执行器名字
+     * @return ExecutorService 执行器实例，当前JDK不支持虚拟线程时返回null
+     */
+    public static ExecutorService createVirtualThreadExecutor(String threadNamePrefix) {
+        ExecutorService executor = threadPollsMap.get(threadNamePrefix);
+        if (executor != null && !executor.isShutdown()) {
+            return executor;
+        }
+        if (!virtualThreadSupported) {
+            return null;
+        }
+        try {
+            ExecutorService created = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            ExecutorService existing = getOrCreate(threadNamePrefix, () -> created);
+            if (existing != created) {
+                created.shutdown();
+            }
+            return existing;
+        } catch (ReflectiveOperationException e) {
+            virtualThreadSupported = false;
+            log.warn("当前JDK不支持虚拟线程: {}", System.getProperty("java.version"));
+            return null;
+        }
+    }
+
+    /**
+     * 返回指定键的执行器，不存在或者已经关闭时用factory创建并替换
+     */
+    private static ExecutorService getOrCreate(String key, Supplier<ExecutorService> factory) {
+        return threadPollsMap.compute(key, (k, pool) -> pool == null || pool.isShutdown() ? factory.get() : pool);
+    }
+
     /**
      * 内部方法，用于创建线程池
      *
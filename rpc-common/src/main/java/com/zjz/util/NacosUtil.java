@@ -3,6 +3,7 @@ package com.zjz.util;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.api.naming.NamingFactory;
 import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.EventListener;
 import com.alibaba.nacos.api.naming.pojo.Instance;
 import com.zjz.enums.RpcError;
 import com.zjz.exception.RpcException;
@@ -62,6 +63,17 @@ public class NacosUtil {
         return namingService.getAllInstances(serviceName);
     }
 
+    /**
+     * 订阅指定服务的实例变化，实例列表变化时Nacos会回调监听器。
+     *
+     * @param serviceName 需要订阅的服务名称。
+     * @param listener 实例变化监听器。
+     * @throws NacosException 如果订阅过程中发生任何异常，则抛出。
+     */
+    public static void subscribe(String serviceName, EventListener listener) throws NacosException {
+        namingService.subscribe(serviceName, listener);
+    }
+
     /**
      * 清除注册中心的注册信息。
      * 该方法会遍历服务名称集合，并尝试为每个服务从注册中心注销。如果注销失败，将会记录错误日志。
@@ -40,10 +40,25 @@ public class RpcMessageChecker {
         }
 
         // 检查请求ID是否匹配
-        if (!rpcRequest.getRequestId().equals(rpcResponse.getRequestId())) {
+        if (rpcRequest.getRequestId() != rpcResponse.getRequestId()) {
             throw new RpcException(RpcError.RESPONSE_NOT_MATCH, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
 
+        // 服务端因过载拒绝了请求，单独区分以便调用方重试其他实例
+        if (rpcResponse.getStatusCode() != null
+                && (rpcResponse.getStatusCode() == ResponseCode.TOO_MANY_REQUESTS.getCode()
+                || rpcResponse.getStatusCode() == ResponseCode.SERVER_BUSY.getCode())) {
+            log.warn("服务端过载,serviceName:{},RpcResponse:{}", rpcRequest.getInterfaceName(), rpcResponse);
+            throw new RpcException(RpcError.SERVICE_OVERLOADED, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+        }
+
+        // 请求在服务端执行前已经超时
+        if (rpcResponse.getStatusCode() != null
+                && rpcResponse.getStatusCode() == ResponseCode.DEADLINE_EXCEEDED.getCode()) {
+            log.warn("请求已超时,serviceName:{},RpcResponse:{}", rpcRequest.getInterfaceName(), rpcResponse);
+            throw new RpcException(RpcError.REQUEST_TIMEOUT, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+        }
+
         // 检查响应状态码是否表示成功
         if (rpcResponse.getStatusCode() == null || !rpcResponse.getStatusCode().equals(ResponseCode.SUCCESS.getCode())) {
             log.error("调用服务失败,serviceName:{},RpcResponse:{}", rpcRequest.getInterfaceName(), rpcResponse);
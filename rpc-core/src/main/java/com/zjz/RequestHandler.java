@@ -2,7 +2,9 @@ package com.zjz;
 
 import com.zjz.entity.RpcRequest;
 import com.zjz.entity.RpcResponse;
+import com.zjz.enums.DispatchMode;
 import com.zjz.enums.ResponseCode;
+import com.zjz.provider.MethodInvoker;
 import com.zjz.provider.ServiceProvider;
 import com.zjz.provider.ServiceProviderImpl;
 import lombok.extern.slf4j.Slf4j;
@@ -43,32 +45,62 @@ public class RequestHandler{
 
     /**
      * 处理RPC请求的函数。
+     * 通过服务注册时预先构建的分派表找到调用器，一次查表后直接调用目标方法。
      *
      * @param rpcRequest 包含RPC调用信息的对象，如服务接口名称、方法名称和参数等。
-     * @return 返回RPC调用的结果，其类型依据实际调用的方法而定。
+     * @return 返回RPC调用的结果，其类型依据实际调用的方法而定；调用失败时返回包含错误信息的RpcResponse对象。
      */
     public Object handle(RpcRequest rpcRequest) {
-        Object service = serviceProvider.getServiceProvider(rpcRequest.getInterfaceName()); // 获取请求的服务对象
-        return invokeTargetMethod(rpcRequest, service); // 返回调用结果
+        MethodInvoker invoker = serviceProvider.getMethodInvoker(rpcRequest.getInterfaceName(),
+                rpcRequest.getMethodName(), rpcRequest.getParamTypes()); // 获取请求的服务方法
+        if (invoker == null) {
+            log.error("未找到服务方法:{}#{}", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+            return RpcResponse.fail(ResponseCode.METHOD_NOT_FOUND, rpcRequest.getRequestId());
+        }
+        return invokeTargetMethod(rpcRequest, invoker); // 返回调用结果
+    }
+
+    /**
+     * 处理带截止时间的RPC请求，截止时间已过时不再调用服务方法，客户端此时已经放弃等待。
+     *
+     * @param rpcRequest 包含RPC调用信息的对象
+     * @param deadlineNanos 截止时间，以{@link System#nanoTime()}为基准，0表示不限制
+     * @return 返回RPC调用的结果；已超时时返回{@link ResponseCode#DEADLINE_EXCEEDED}的失败响应
+     */
+    public Object handle(RpcRequest rpcRequest, long deadlineNanos) {
+        if (deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0) {
+            log.warn("请求在执行前已经超时，跳过执行:{}#{}", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+            return RpcResponse.fail(ResponseCode.DEADLINE_EXCEEDED, rpcRequest.getRequestId());
+        }
+        return handle(rpcRequest);
+    }
+
+    /**
+     * 获取服务指定的执行方式。
+     *
+     * @param serviceName 服务名称
+     * @return 服务通过注解指定的执行方式，未指定时返回null
+     */
+    public DispatchMode getDispatchMode(String serviceName) {
+        return serviceProvider.getDispatchMode(serviceName);
     }
 
     /**
      * 调用目标方法。
      *
      * @param rpcRequest 包含RPC调用所需全部信息的对象，如方法名、参数类型和参数值等。
-     * @param service 要调用方法的服务对象。
+     * @param invoker 绑定了服务对象的方法调用器。
      * @return 返回方法调用的结果。如果方法调用失败，则返回一个包含错误信息的RpcResponse对象。
      */
-    private Object invokeTargetMethod(RpcRequest rpcRequest, Object service) {
+    private Object invokeTargetMethod(RpcRequest rpcRequest, MethodInvoker invoker) {
         Object result;
         try {
-            // 通过反射获取方法对象，并调用方法
-            Method method = service.getClass().getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
-            result = method.invoke(service, rpcRequest.getParameters());
+            result = invoker.invoke(rpcRequest.getParameters());
             log.info("服务:{} 成功调用方法:{}", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-            // 如果方法不存在或调用失败，则返回方法未找到的错误响应
-            return RpcResponse.fail(ResponseCode.METHOD_NOT_FOUND, rpcRequest.getRequestId());
+        } catch (Throwable e) {
+            // 服务方法执行时抛出异常，返回调用失败的错误响应
+            log.error("服务:{} 调用方法:{} 时有错误发生", rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), e);
+            return RpcResponse.fail(ResponseCode.FAIL, rpcRequest.getRequestId());
         }
         return  result;
     }
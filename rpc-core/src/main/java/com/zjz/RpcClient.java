@@ -3,7 +3,28 @@ package com.zjz;
 import com.zjz.entity.RpcRequest;
 import com.zjz.serializer.CommonSerializer;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface RpcClient {
     int DEFAULT_SERIALIZER = CommonSerializer.KRYO_SERIALIZER;
+    // 请求未指定超时时间时使用的默认超时时间，单位毫秒
+    long DEFAULT_TIMEOUT_MILLIS = 10000;
     Object sendRequest(RpcRequest rpcRequest);
+
+    /**
+     * 异步发送请求，返回的Future在收到响应后完成。
+     * 默认实现直接在调用线程上同步调用{@link #sendRequest(RpcRequest)}，支持异步的客户端应当覆盖该方法。
+     *
+     * @param rpcRequest RPC请求对象
+     * @return 完成值为响应数据的Future，调用失败时以异常完成
+     */
+    default CompletableFuture<Object> sendRequestAsync(RpcRequest rpcRequest) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        try {
+            future.complete(sendRequest(rpcRequest));
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
 }
@@ -1,23 +1,44 @@
 package com.zjz;
 
 import com.zjz.entity.RpcRequest;
+import com.zjz.proxy.RpcInvocationHandler;
+import com.zjz.proxy.RpcMethod;
+import com.zjz.proxy.StubGenerator;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.UUID;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * RPC客户端代理类，用于动态生成RPC客户端代理对象。
+ * 默认使用JDK动态代理；开启存根模式后为每个接口生成具体的存根类（见{@link StubGenerator}），生成失败时退回JDK动态代理。
  */
 @Slf4j
-public class RpcClientProxy implements InvocationHandler {
+public class RpcClientProxy implements InvocationHandler, RpcInvocationHandler {
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
 
     private final RpcClient rpcClient;
+    private final boolean useStub;
+    // JDK动态代理模式下缓存每个方法的元数据，避免每次调用重新取接口名和复制参数类型数组
+    private final Map<Method, RpcMethod> methodCache = new ConcurrentHashMap<>();
+
     public RpcClientProxy(RpcClient rpcClient){
+        this(rpcClient, false);
+    }
 
+    /**
+     * @param rpcClient RPC客户端
+     * @param useStub 是否使用生成的存根类代替JDK动态代理
+     */
+    public RpcClientProxy(RpcClient rpcClient, boolean useStub){
         this.rpcClient = rpcClient;
+        this.useStub = useStub;
     }
     /**
      * 获取代理对象。该方法会根据传入的接口类动态创建一个实现了该接口的代理对象。
@@ -28,6 +49,13 @@ public class RpcClientProxy implements InvocationHandler {
      */
     @SuppressWarnings("unchecked")
     public <T> T getProxy(Class<T> clazz){
+        if (useStub) {
+            try {
+                return StubGenerator.newInstance(clazz, this);
+            } catch (Exception | LinkageError e) {
+                log.warn("为接口 {} 生成存根失败，改用JDK动态代理", clazz.getName(), e);
+            }
+        }
         return (T) Proxy.newProxyInstance(clazz.getClassLoader(),new Class<?>[]{clazz},this);
     }
 
@@ -43,11 +71,36 @@ public class RpcClientProxy implements InvocationHandler {
      */
     @Override
     public Object invoke(Object proxy, Method method, Object[] args){
-        log.info("调用方法：{}#{}" ,method.getDeclaringClass().getName() , method.getName()); // 记录方法调用信息
-        // 构造RPC请求
-        RpcRequest rpcRequest = new RpcRequest(UUID.randomUUID().toString(),method.getDeclaringClass().getName(),
-                method.getName(),args,method.getParameterTypes());
+        RpcMethod rpcMethod = methodCache.get(method);
+        if (rpcMethod == null) {
+            rpcMethod = methodCache.computeIfAbsent(method, RpcMethod::new);
+        }
+        return invoke(rpcMethod, args == null ? EMPTY_ARGS : args);
+    }
+
+    /**
+     * 根据预计算的方法元数据构造RPC请求并发送。
+     * 返回值类型为{@link CompletableFuture}或{@link CompletionStage}的方法走异步调用，直接返回Future而不阻塞调用线程。
+     *
+     * @param method 方法元数据
+     * @param args 方法调用时传入的参数
+     * @return 返回方法的执行结果，异步方法返回Future
+     */
+    @Override
+    public Object invoke(RpcMethod method, Object[] args) {
+        log.info("调用方法：{}#{}" ,method.getInterfaceName() , method.getMethodName()); // 记录方法调用信息
+        // 构造RPC请求，请求号由发送该请求的连接分配
+        RpcRequest rpcRequest = RpcRequest.builder()
+                .interfaceName(method.getInterfaceName())
+                .methodName(method.getMethodName())
+                .parameters(args)
+                .paramTypes(method.getParamTypes())
+                .timeoutMillis(method.getTimeoutMillis())
+                .build();
 
+        if (method.isAsync()) {
+            return rpcClient.sendRequestAsync(rpcRequest); // 异步调用，返回Future
+        }
         return rpcClient.sendRequest(rpcRequest); // 发送RPC请求并返回结果
     }
 
@@ -0,0 +1,16 @@
+package com.zjz.codec;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 批量消息，由{@link CommonEncoder}编码为一个批量帧。
+ * 其中的消息必须同为请求或同为响应，每条消息带有各自的请求号。
+ */
+@Getter
+@AllArgsConstructor
+public class BatchMessage {
+    private final List<Object> messages;
+}
@@ -0,0 +1,117 @@
+package com.zjz.codec;
+
+import com.zjz.entity.RpcRequest;
+import com.zjz.entity.RpcResponse;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量发送处理器，放在{@link CommonEncoder}之后（更靠近pipeline尾部）。
+ * 写出的请求/响应先在本连接上缓存，等待一个时间窗口或攒够指定条数后作为一个批量帧写出并flush，
+ * 大量小调用时可以显著减少帧头开销、系统调用和网络包的数量。
+ * <p>
+ * 所有方法都在连接的EventLoop中执行，缓存无需加锁。
+ * 服务端只在对端发送过批量帧之后才批量返回响应，见{@link #PEER_BATCHING}。
+ * </p>
+ */
+public class BatchingHandler extends ChannelOutboundHandlerAdapter {
+
+    /**
+     * 对端是否发送过批量帧，由{@link CommonDecoder}在收到批量帧时设置
+     */
+    public static final AttributeKey<Boolean> PEER_BATCHING = AttributeKey.valueOf("peerBatching");
+
+    private final long windowNanos;
+    private final int maxMessages;
+    private final boolean onlyWhenPeerBatching;
+
+    private final List<Object> pendingMessages = new ArrayList<>();
+    private final List<ChannelPromise> pendingPromises = new ArrayList<>();
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * @param windowMicros 缓存的时间窗口，单位微秒，从窗口内第一条消息开始计时
+     * @param maxMessages 一批的最大条数，攒够后立即写出
+     * @param onlyWhenPeerBatching 是否只在对端发送过批量帧后才批量写出，服务端使用
+     */
+    public BatchingHandler(long windowMicros, int maxMessages, boolean onlyWhenPeerBatching) {
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxMessages = Math.max(1, maxMessages);
+        this.onlyWhenPeerBatching = onlyWhenPeerBatching;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof RpcRequest || msg instanceof RpcResponse) || !batching(ctx)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        pendingMessages.add(msg);
+        pendingPromises.add(promise);
+        if (pendingMessages.size() >= maxMessages) {
+            writeBatch(ctx);
+        } else if (flushTask == null) {
+            flushTask = ctx.executor().schedule(() -> {
+                flushTask = null;
+                writeBatch(ctx);
+            }, windowNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        // 有缓存的消息时推迟到批量写出时再flush
+        if (pendingMessages.isEmpty()) {
+            ctx.flush();
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        writeBatch(ctx);
+        ctx.close(promise);
+    }
+
+    private boolean batching(ChannelHandlerContext ctx) {
+        return !onlyWhenPeerBatching || Boolean.TRUE.equals(ctx.channel().attr(PEER_BATCHING).get());
+    }
+
+    /**
+     * 将缓存的消息写出并flush，只有一条时按普通帧写出
+     */
+    private void writeBatch(ChannelHandlerContext ctx) {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (pendingMessages.isEmpty()) {
+            return;
+        }
+        if (pendingMessages.size() == 1) {
+            ctx.write(pendingMessages.get(0), pendingPromises.get(0));
+        } else {
+            List<ChannelPromise> promises = new ArrayList<>(pendingPromises);
+            ctx.write(new BatchMessage(new ArrayList<>(pendingMessages)))
+                    .addListener((ChannelFutureListener) future -> {
+                        for (ChannelPromise promise : promises) {
+                            if (future.isSuccess()) {
+                                promise.trySuccess();
+                            } else {
+                                promise.tryFailure(future.cause());
+                            }
+                        }
+                    });
+        }
+        pendingMessages.clear();
+        pendingPromises.clear();
+        ctx.flush();
+    }
+}
@@ -1,5 +1,6 @@
 package com.zjz.codec;
 
+import com.zjz.compress.Compressor;
 import com.zjz.entity.RpcRequest;
 import com.zjz.entity.RpcResponse;
 import com.zjz.enums.PackageType;
@@ -7,65 +8,287 @@ import com.zjz.enums.RpcError;
 import com.zjz.exception.RpcException;
 import com.zjz.serializer.CommonSerializer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ReplayingDecoder;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.Attribute;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
+import java.util.Map;
+
 /**
- * 通用解码器，用于解析RPC框架中的网络数据包。
- * 继承自ReplayingDecoder，利用ReplayingDecoder的帧解析能力，实现对RPC数据包的解码。
+ * 通用解码器，用于解析RPC框架中的网络数据包，帧格式见{@link Protocol}。
+ * 按帧的第一个字节区分协议版本，两个版本的帧可以出现在同一条连接上；收到帧后把对端的版本记录在通道属性中，
+ * 供{@link CommonEncoder}按相同的版本回复。
+ * v1帧由父类LengthFieldBasedFrameDecoder按长度字段切分，v2帧按8字节帧头中的长度切分，都等待完整的帧到达后再解析，
+ * 不会对半包反复重放读取。
+ * 得到的帧是接收缓冲区的切片，消息体直接交给序列化器从缓冲区中读取，不再复制到新的字节数组。
+ * 批量帧中的每条消息被逐条解码后依次传给下一个处理器；心跳帧解码为{@link Heartbeat}，不经过序列化器。
+ * 帧头中标记了压缩算法时，数据部分先解压到池化的堆内缓冲区再交给序列化器，解压后的长度同样受最大帧长度限制；
+ * 所用的压缩算法记录在通道属性中，供{@link CommonEncoder}以相同的算法压缩回复。
  */
 @Slf4j
-public class CommonDecoder extends ReplayingDecoder {
+public class CommonDecoder extends LengthFieldBasedFrameDecoder {
+
+    private static final int LENGTH_FIELD_LENGTH = 4;
+    // 默认允许的最大帧长度
+    private static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private final int maxFrameLength;
+
+    public CommonDecoder() {
+        this(DEFAULT_MAX_FRAME_LENGTH);
+    }
 
-    private static final int MAGIC_NUMBER = 0xCAFEBABE; // 协议约定的魔数，用于识别数据包是否为本框架处理的RPC包。
+    /**
+     * @param maxFrameLength 允许的最大帧长度，超过时抛出TooLongFrameException
+     */
+    public CommonDecoder(int maxFrameLength) {
+        super(maxFrameLength, Protocol.V1_LENGTH_FIELD_OFFSET, LENGTH_FIELD_LENGTH, 0, 0);
+        this.maxFrameLength = maxFrameLength;
+    }
 
     /**
-     * 解码方法，负责解析ByteBuf中的数据，并将其转换为Java对象添加到out列表中。
+     * 解码方法，等待一个完整的帧后将其解析为Java对象。
      *
      * @param ctx 通道上下文，用于获取通道相关信息和操作通道。
      * @param in 输入的ByteBuf，包含需要解码的数据。
-     * @param out 存放解码结果的列表。
+     * @return 解码得到的对象，帧不完整时返回null
      * @throws Exception 解码过程中发生的任何异常。
      */
     @Override
-    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        // 读取并校验魔法数字
-        int magic = in.readInt();
-        if(magic != MAGIC_NUMBER) {
-            log.error("不识别的协议包: {}", magic);
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        if (!in.isReadable()) {
+            return null;
+        }
+        // 尽早校验魔数，不必等到整帧到达
+        int start = in.readerIndex();
+        int version = Protocol.version(in.getByte(start));
+        if (version < 0 || version == Protocol.VERSION_1 && in.readableBytes() >= 4
+                && in.getInt(start) != Protocol.MAGIC_NUMBER) {
+            log.error("不识别的协议包: {}", in.getByte(start));
+            throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+        }
+        ByteBuf frame = version == Protocol.VERSION_2 ? extractV2Frame(in) : (ByteBuf) super.decode(ctx, in);
+        if (frame == null) {
+            return null;
+        }
+        Attribute<Integer> peerVersion = ctx.channel().attr(Protocol.PEER_VERSION);
+        if (peerVersion.get() == null || peerVersion.get() != version) {
+            peerVersion.set(version);
+        }
+        Attribute<Integer> peerMaxVersion = ctx.channel().attr(Protocol.PEER_MAX_VERSION);
+        if (peerMaxVersion.get() == null || peerMaxVersion.get() < version) {
+            peerMaxVersion.set(version);
+        }
+        try {
+            return version == Protocol.VERSION_2 ? decodeV2Frame(ctx, frame) : decodeV1Frame(ctx, frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * 按v2帧头中的数据长度切分出一个完整的帧，帧不完整时返回null
+     */
+    private ByteBuf extractV2Frame(ByteBuf in) {
+        if (in.readableBytes() < Protocol.V2_HEADER_LENGTH) {
+            return null;
+        }
+        int start = in.readerIndex();
+        int version = in.getUnsignedByte(start + Protocol.V2_VERSION_OFFSET);
+        if (version != Protocol.VERSION_2) {
+            log.error("不支持的协议版本: {}", version);
             throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
         }
+        int length = in.getInt(start + Protocol.V2_LENGTH_FIELD_OFFSET);
+        if (length < 0 || length > maxFrameLength - Protocol.V2_HEADER_LENGTH) {
+            throw new TooLongFrameException("数据包长度超过限制: " + length);
+        }
+        int frameLength = Protocol.V2_HEADER_LENGTH + length;
+        if (in.readableBytes() < frameLength) {
+            return null;
+        }
+        ByteBuf frame = in.retainedSlice(start, frameLength);
+        in.skipBytes(frameLength);
+        return frame;
+    }
+
+    private Object decodeV1Frame(ChannelHandlerContext ctx, ByteBuf frame) {
+        // 魔数已校验，跳过
+        frame.skipBytes(4);
+        int packageCode = frame.readInt();
+        if (packageCode == PackageType.HEARTBEAT_PING.getCode()) {
+            // 请求号字段为v2及以上的是版本探测
+            return frame.getLong(Protocol.V1_REQUEST_ID_OFFSET) >= Protocol.VERSION_2 ? Heartbeat.VERSION_PROBE : Heartbeat.PING;
+        }
+        if (packageCode == PackageType.HEARTBEAT_PONG.getCode()) {
+            return Heartbeat.PONG;
+        }
+        Class<?> packageClass = packageClass(packageCode);
+        // 读取并解析序列化器代码，最高字节为压缩算法编号
+        int serializerField = frame.readInt();
+        CommonSerializer serializer = serializer(serializerField & Compressor.SERIALIZER_MASK);
+        Compressor compressor = compressor(serializerField >>> Compressor.HEADER_SHIFT);
+        long requestId = frame.readLong();
+        // 数据长度已由父类校验，批量帧的请求号不使用
+        frame.skipBytes(LENGTH_FIELD_LENGTH);
+        ByteBuf data = compressor == null ? frame : decompress(ctx, frame, compressor);
+        try {
+            if (isBatch(packageCode)) {
+                decodeBatch(ctx, data, serializer, packageClass, Protocol.VERSION_1, false);
+                return null;
+            }
+            return readBody(data, serializer, packageClass, requestId, null);
+        } finally {
+            if (data != frame) {
+                data.release();
+            }
+        }
+    }
+
+    private Object decodeV2Frame(ChannelHandlerContext ctx, ByteBuf frame) {
+        // 魔数和版本已校验，跳过
+        frame.skipBytes(2);
+        int flags = Protocol.readFlags(frame);
+        int codec = frame.readUnsignedByte();
+        frame.skipBytes(LENGTH_FIELD_LENGTH);
+        int packageCode = flags & Protocol.TYPE_MASK;
+        if (packageCode == PackageType.HEARTBEAT_PING.getCode()) {
+            return Heartbeat.PING;
+        }
+        if (packageCode == PackageType.HEARTBEAT_PONG.getCode()) {
+            return Heartbeat.PONG;
+        }
+        Class<?> packageClass = packageClass(packageCode);
+        CommonSerializer serializer = serializer(Protocol.serializerCode(codec));
+        Compressor compressor = compressor(Protocol.compressorCode(codec));
+        boolean hasAttachments = (flags & Protocol.FLAG_ATTACHMENTS) != 0;
+        long requestId = 0;
+        Map<String, String> attachments = null;
+        boolean batch = isBatch(packageCode);
+        if (!batch) {
+            // 请求号和附加信息不参与压缩
+            requestId = Protocol.readVarLong(frame);
+            attachments = hasAttachments ? Protocol.readAttachments(frame) : null;
+        }
+        ByteBuf data = compressor == null ? frame : decompress(ctx, frame, compressor);
+        try {
+            if (batch) {
+                decodeBatch(ctx, data, serializer, packageClass, Protocol.VERSION_2, hasAttachments);
+                return null;
+            }
+            return readBody(data, serializer, packageClass, requestId, attachments);
+        } finally {
+            if (data != frame) {
+                data.release();
+            }
+        }
+    }
 
-        // 读取并解析包类型代码
-        int packageCode = in.readInt();
-        Class<?> packageClass;
-        // 根据包类型代码，确定具体的包类型
-        if(packageCode == PackageType.REQUEST_PACK.getCode()) {
-            packageClass = RpcRequest.class;
-        } else if(packageCode == PackageType.RESPONSE_PACK.getCode()) {
-            packageClass = RpcResponse.class;
-        } else {
-            log.error("不识别的数据包: {}", packageCode);
-            throw new RpcException(RpcError.UNKNOWN_PACKAGE_TYPE);
+    private static Class<?> packageClass(int packageCode) {
+        if (packageCode == PackageType.REQUEST_PACK.getCode() || packageCode == PackageType.BATCH_REQUEST_PACK.getCode()) {
+            return RpcRequest.class;
         }
+        if (packageCode == PackageType.RESPONSE_PACK.getCode() || packageCode == PackageType.BATCH_RESPONSE_PACK.getCode()) {
+            return RpcResponse.class;
+        }
+        log.error("不识别的数据包: {}", packageCode);
+        throw new RpcException(RpcError.UNKNOWN_PACKAGE_TYPE);
+    }
+
+    private static boolean isBatch(int packageCode) {
+        return packageCode == PackageType.BATCH_REQUEST_PACK.getCode()
+                || packageCode == PackageType.BATCH_RESPONSE_PACK.getCode();
+    }
 
-        // 读取并解析序列化器代码
-        int serializerCode = in.readInt();
+    private static CommonSerializer serializer(int serializerCode) {
         CommonSerializer serializer = CommonSerializer.getByCode(serializerCode);
-        if(serializer == null) {
+        if (serializer == null) {
             log.error("不识别的反序列化器: {}", serializerCode);
             throw new RpcException(RpcError.UNKNOWN_SERIALIZER);
         }
+        return serializer;
+    }
+
+    /**
+     * @return 压缩算法，没有压缩时返回null
+     */
+    private static Compressor compressor(int compressorCode) {
+        if (compressorCode == Compressor.NO_COMPRESSOR) {
+            return null;
+        }
+        Compressor compressor = Compressor.getByCode(compressorCode);
+        if (compressor == null) {
+            log.error("不识别的压缩算法: {}", compressorCode);
+            throw new RpcException(RpcError.UNKNOWN_COMPRESSOR);
+        }
+        return compressor;
+    }
+
+    /**
+     * 逐条解码批量帧中的消息并直接传给下一个处理器，每条消息为
+     * 请求号(v1为8字节，v2为varint) + [附加信息] + 数据长度(4) + 数据
+     */
+    private void decodeBatch(ChannelHandlerContext ctx, ByteBuf data, CommonSerializer serializer, Class<?> packageClass,
+                             int version, boolean hasAttachments) {
+        ctx.channel().attr(BatchingHandler.PEER_BATCHING).set(Boolean.TRUE);
+        while (data.isReadable()) {
+            long requestId = version == Protocol.VERSION_2 ? Protocol.readVarLong(data) : data.readLong();
+            Map<String, String> attachments = hasAttachments ? Protocol.readAttachments(data) : null;
+            int length = data.readInt();
+            ctx.fireChannelRead(readBody(data.readSlice(length), serializer, packageClass, requestId, attachments));
+        }
+    }
 
-        // 读取并解析数据体长度及数据体
-        int length = in.readInt();
-        byte[] bytes = new byte[length];
-        in.readBytes(bytes);
-        // 使用反序列化器将字节数据转换为Java对象
-        Object obj = serializer.deserialize(bytes, packageClass);
-        // 将解码后的对象添加到结果列表中
-        out.add(obj);
+    /**
+     * 把 原始长度(4) + 压缩数据 解压到池化的堆内缓冲区中，由调用方释放
+     */
+    private ByteBuf decompress(ChannelHandlerContext ctx, ByteBuf in, Compressor compressor) {
+        Attribute<Integer> peerCompressor = ctx.channel().attr(Protocol.PEER_COMPRESSOR);
+        if (peerCompressor.get() == null || peerCompressor.get() != compressor.getCode()) {
+            peerCompressor.set(compressor.getCode());
+        }
+        ByteBufAllocator alloc = ctx.alloc();
+        if (in.readableBytes() < 4) {
+            throw new RpcException(RpcError.DECOMPRESSION_FAILED, "压缩数据长度不合法");
+        }
+        int originalLength = in.readInt();
+        int compressedLength = in.readableBytes();
+        if (originalLength < 0 || originalLength > maxFrameLength) {
+            throw new TooLongFrameException("解压后的数据长度超过限制: " + originalLength);
+        }
+        ByteBuf heapInput = in.hasArray() ? null : alloc.heapBuffer(compressedLength);
+        ByteBuf data = alloc.heapBuffer(originalLength);
+        try {
+            ByteBuf src = in;
+            if (heapInput != null) {
+                heapInput.writeBytes(in, in.readerIndex(), compressedLength);
+                src = heapInput;
+            }
+            compressor.decompress(src.array(), src.arrayOffset() + src.readerIndex(), compressedLength,
+                    data.array(), data.arrayOffset(), originalLength);
+            data.writerIndex(originalLength);
+            in.skipBytes(compressedLength);
+            return data;
+        } catch (RuntimeException e) {
+            data.release();
+            throw e;
+        } finally {
+            if (heapInput != null) {
+                heapInput.release();
+            }
+        }
+    }
+
+    /**
+     * 把剩余的数据交给反序列化器读取，并设置帧中传输的请求号和附加信息
+     */
+    private static Object readBody(ByteBuf body, CommonSerializer serializer, Class<?> packageClass, long requestId,
+                                   Map<String, String> attachments) {
+        Object obj = serializer.deserialize(body.slice(), packageClass);
+        Protocol.setHeaderFields(obj, requestId, attachments);
+        return obj;
     }
 }
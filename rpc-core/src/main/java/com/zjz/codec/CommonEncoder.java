@@ -1,33 +1,238 @@
 package com.zjz.codec;
 
+import com.zjz.compress.Compressor;
 import com.zjz.entity.RpcRequest;
 import com.zjz.enums.PackageType;
 import com.zjz.serializer.CommonSerializer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
+import java.util.List;
+
+/**
+ * 通用编码器，支持两个版本的帧格式，格式见{@link Protocol}。
+ * v1帧为：魔数(4) + 包类型(4) + 序列化器编号(4) + 请求号(8) + 数据长度(4) + 数据，不传输附加信息；
+ * v2帧头只有8字节，请求号以varint写在数据部分开头，并可以携带附加信息。
+ * 消息体由序列化器直接写入输出缓冲区，写完后再回填数据长度，不经过中间字节数组。
+ * {@link BatchMessage}编码为批量帧；{@link Heartbeat}编码为没有数据的帧。
+ * 设置了压缩算法时，消息体（批量帧为全部消息）达到阈值后整体压缩，格式见{@link Compressor}，
+ * 压缩后没有变小的数据按原样发送。
+ * 协议版本为{@link #FOLLOW_PEER}时使用对端最近一次发来的帧的版本，服务端以此兼容新旧两个版本的客户端；
+ * 为{@link #NEGOTIATE}时使用对端发来过的最高版本，客户端发出{@link Heartbeat#VERSION_PROBE}后据此升级；
+ * 压缩算法为{@link Compressor#FOLLOW_PEER}时使用对端最近一次发来的压缩帧的算法，不会向不支持压缩的客户端发送压缩帧。
+ */
 public class CommonEncoder extends MessageToByteEncoder {
 
-    private static final int MAGIC_NUMBER = 0xCAFEBABE;
+    // 按对端使用的版本编码，对端还没有发来过帧时使用v1
+    public static final int FOLLOW_PEER = 0;
+    // 使用对端发来过的最高协议版本，对端发来v2帧之前使用v1，客户端以此在服务端支持v2时自动升级
+    public static final int NEGOTIATE = -1;
 
     private final CommonSerializer serializer;
+    // 压缩算法，为null时不压缩
+    private final Compressor compressor;
+    // 是否使用对端的压缩算法
+    private final boolean followPeerCompressor;
+    // 数据部分达到该大小时才压缩
+    private final int compressThreshold;
+    private final int protocolVersion;
 
     public CommonEncoder(CommonSerializer serializer) {
+        this(serializer, Compressor.NO_COMPRESSOR, Compressor.DEFAULT_THRESHOLD);
+    }
+
+    public CommonEncoder(CommonSerializer serializer, int compressor, int compressThreshold) {
+        this(serializer, compressor, compressThreshold, Protocol.VERSION_1);
+    }
+
+    /**
+     * @param serializer 序列化器
+     * @param compressor 压缩算法编号，见{@link Compressor}，为{@link Compressor#FOLLOW_PEER}时与对端一致
+     * @param compressThreshold 数据部分达到该字节数时才压缩
+     * @param protocolVersion 协议版本，见{@link Protocol}，为{@link #FOLLOW_PEER}时与对端一致，为{@link #NEGOTIATE}时与对端协商
+     */
+    public CommonEncoder(CommonSerializer serializer, int compressor, int compressThreshold, int protocolVersion) {
         this.serializer = serializer;
+        this.followPeerCompressor = compressor == Compressor.FOLLOW_PEER;
+        this.compressor = followPeerCompressor ? null : Compressor.getByCode(compressor);
+        this.compressThreshold = compressThreshold;
+        this.protocolVersion = protocolVersion;
     }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
-        out.writeInt(MAGIC_NUMBER);
-        if(msg instanceof RpcRequest) {
-            out.writeInt(PackageType.REQUEST_PACK.getCode());
+        int version = protocolVersion;
+        if (msg == Heartbeat.VERSION_PROBE) {
+            version = Protocol.VERSION_1;
+        } else if (msg == Heartbeat.VERSION_ACK) {
+            version = Protocol.VERSION_2;
+        } else if (version == FOLLOW_PEER || version == NEGOTIATE) {
+            Integer peerVersion = ctx.channel().attr(version == FOLLOW_PEER ? Protocol.PEER_VERSION : Protocol.PEER_MAX_VERSION).get();
+            version = peerVersion == null ? Protocol.VERSION_1 : peerVersion;
+        }
+        Compressor effectiveCompressor = compressor;
+        if (followPeerCompressor) {
+            Integer peerCompressor = ctx.channel().attr(Protocol.PEER_COMPRESSOR).get();
+            effectiveCompressor = peerCompressor == null ? null : Compressor.getByCode(peerCompressor);
+        }
+        if (version == Protocol.VERSION_2) {
+            encodeV2(ctx.alloc(), msg, out, effectiveCompressor);
+        } else {
+            encodeV1(ctx.alloc(), msg, out, effectiveCompressor);
+        }
+    }
+
+    private void encodeV1(ByteBufAllocator alloc, Object msg, ByteBuf out, Compressor compressor) {
+        int frameIndex = out.writerIndex();
+        out.writeInt(Protocol.MAGIC_NUMBER);
+        if (msg instanceof BatchMessage) {
+            encodeBatch((BatchMessage) msg, out);
+        } else if (msg instanceof Heartbeat) {
+            out.writeInt(((Heartbeat) msg).getPackageType().getCode());
+            out.writeInt(serializer.getCode());
+            // 心跳帧的请求号字段不使用，版本探测在其中写入支持的最高版本
+            out.writeLong(msg == Heartbeat.VERSION_PROBE ? Protocol.VERSION_2 : 0);
+            out.writeInt(0);
+            return;
+        } else {
+            out.writeInt(packageType(msg, false));
+            out.writeInt(serializer.getCode());
+            writeMessage(msg, out);
+        }
+        int bodyIndex = frameIndex + Protocol.V1_HEADER_LENGTH;
+        int compressorCode = compress(alloc, out, bodyIndex, compressor);
+        if (compressorCode != Compressor.NO_COMPRESSOR) {
+            out.setInt(frameIndex + Protocol.V1_SERIALIZER_FIELD_OFFSET,
+                    serializer.getCode() | compressorCode << Compressor.HEADER_SHIFT);
+            out.setInt(frameIndex + Protocol.V1_LENGTH_FIELD_OFFSET, out.writerIndex() - bodyIndex);
+        }
+    }
+
+    /**
+     * v2帧：帧头之后是 请求号(varint) + [附加信息] + 消息体，只压缩消息体；
+     * 批量帧依次为每条消息的 请求号(varint) + [附加信息] + 消息体长度(4) + 消息体，整体压缩。
+     * 批量帧中任一消息带有附加信息时，每条消息都写出附加信息（没有时为0条）。
+     */
+    private void encodeV2(ByteBufAllocator alloc, Object msg, ByteBuf out, Compressor compressor) {
+        int frameIndex = out.writerIndex();
+        if (msg instanceof Heartbeat) {
+            Protocol.writeHeader(out, ((Heartbeat) msg).getPackageType().getCode(), 0,
+                    serializer.getCode(), Compressor.NO_COMPRESSOR);
+            return;
+        }
+        int dataIndex = frameIndex + Protocol.V2_HEADER_LENGTH;
+        int bodyIndex;
+        if (msg instanceof BatchMessage) {
+            List<Object> messages = ((BatchMessage) msg).getMessages();
+            boolean attachments = false;
+            for (Object message : messages) {
+                attachments |= Protocol.hasAttachments(message);
+            }
+            Protocol.writeHeader(out, packageType(messages.get(0), true),
+                    attachments ? Protocol.FLAG_ATTACHMENTS : 0, serializer.getCode(), Compressor.NO_COMPRESSOR);
+            for (Object message : messages) {
+                Protocol.writeVarLong(out, Protocol.requestId(message));
+                if (attachments) {
+                    Protocol.writeAttachments(out, Protocol.attachments(message));
+                }
+                int lengthIndex = out.writerIndex();
+                out.writeInt(0);
+                serializer.serialize(message, out);
+                out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+            }
+            bodyIndex = dataIndex;
         } else {
-            out.writeInt(PackageType.RESPONSE_PACK.getCode());
+            boolean attachments = Protocol.hasAttachments(msg);
+            Protocol.writeHeader(out, packageType(msg, false),
+                    attachments ? Protocol.FLAG_ATTACHMENTS : 0, serializer.getCode(), Compressor.NO_COMPRESSOR);
+            Protocol.writeVarLong(out, Protocol.requestId(msg));
+            if (attachments) {
+                Protocol.writeAttachments(out, Protocol.attachments(msg));
+            }
+            bodyIndex = out.writerIndex();
+            serializer.serialize(msg, out);
+        }
+        int compressorCode = compress(alloc, out, bodyIndex, compressor);
+        if (compressorCode != Compressor.NO_COMPRESSOR) {
+            out.setByte(frameIndex + Protocol.V2_CODEC_OFFSET, Protocol.codec(serializer.getCode(), compressorCode));
+        }
+        out.setInt(frameIndex + Protocol.V2_LENGTH_FIELD_OFFSET, out.writerIndex() - dataIndex);
+    }
+
+    private static int packageType(Object msg, boolean batch) {
+        if (msg instanceof RpcRequest) {
+            return (batch ? PackageType.BATCH_REQUEST_PACK : PackageType.REQUEST_PACK).getCode();
         }
+        return (batch ? PackageType.BATCH_RESPONSE_PACK : PackageType.RESPONSE_PACK).getCode();
+    }
+
+    /**
+     * bodyIndex之后的数据达到阈值时压缩：写出 原始长度(4) + 压缩数据 替换原数据，由调用方在帧头中标记压缩算法、回填数据长度。
+     * 压缩在池化的堆内缓冲区中进行，输出缓冲区不是堆内缓冲区时先复制出数据部分。
+     *
+     * @param compressor 压缩算法，为null时不压缩
+     * @return 实际使用的压缩算法编号，没有压缩时为{@link Compressor#NO_COMPRESSOR}
+     */
+    private int compress(ByteBufAllocator alloc, ByteBuf out, int bodyIndex, Compressor compressor) {
+        int length = out.writerIndex() - bodyIndex;
+        if (compressor == null || length < compressThreshold) {
+            return Compressor.NO_COMPRESSOR;
+        }
+        ByteBuf heapBody = out.hasArray() ? null : alloc.heapBuffer(length);
+        ByteBuf compressed = alloc.heapBuffer(compressor.maxCompressedLength(length));
+        try {
+            ByteBuf src = out;
+            int srcIndex = bodyIndex;
+            if (heapBody != null) {
+                heapBody.writeBytes(out, bodyIndex, length);
+                src = heapBody;
+                srcIndex = 0;
+            }
+            int compressedLength = compressor.compress(src.array(), src.arrayOffset() + srcIndex, length,
+                    compressed.array(), compressed.arrayOffset());
+            if (4 + compressedLength >= length) {
+                return Compressor.NO_COMPRESSOR;
+            }
+            out.writerIndex(bodyIndex);
+            out.writeInt(length);
+            out.writeBytes(compressed.array(), compressed.arrayOffset(), compressedLength);
+            return compressor.getCode();
+        } finally {
+            if (heapBody != null) {
+                heapBody.release();
+            }
+            compressed.release();
+        }
+    }
+
+    /**
+     * v1批量帧的帧头与普通帧相同，帧头中的请求号不使用（为0），
+     * 数据部分依次为每条消息的 请求号(8) + 数据长度(4) + 数据。
+     */
+    private void encodeBatch(BatchMessage batch, ByteBuf out) {
+        List<Object> messages = batch.getMessages();
+        out.writeInt(packageType(messages.get(0), true));
         out.writeInt(serializer.getCode());
-        byte[] bytes = serializer.serialize(msg);
-        out.writeInt(bytes.length);
-        out.writeBytes(bytes);
+        out.writeLong(0);
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        for (Object msg : messages) {
+            writeMessage(msg, out);
+        }
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+    }
+
+    /**
+     * 写出 请求号(8) + 数据长度(4) + 数据
+     */
+    private void writeMessage(Object msg, ByteBuf out) {
+        out.writeLong(Protocol.requestId(msg));
+        // 先占位数据长度，消息体写完后回填
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        serializer.serialize(msg, out);
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
     }
 }
@@ -0,0 +1,23 @@
+package com.zjz.codec;
+
+import com.zjz.enums.PackageType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 心跳消息，编码为只有帧头、没有数据部分的帧，不经过序列化器。
+ * 版本探测和它的回复也使用心跳帧，格式见{@link Protocol}。
+ */
+@AllArgsConstructor
+@Getter
+public enum Heartbeat {
+
+    PING(PackageType.HEARTBEAT_PING),
+    PONG(PackageType.HEARTBEAT_PONG),
+    // 版本探测，总是编码为v1的PING帧，不认识探测的对端当作普通的PING
+    VERSION_PROBE(PackageType.HEARTBEAT_PING),
+    // 版本探测的回复，总是编码为v2的PONG帧，对端解码为普通的PONG
+    VERSION_ACK(PackageType.HEARTBEAT_PONG);
+
+    private final PackageType packageType;
+}
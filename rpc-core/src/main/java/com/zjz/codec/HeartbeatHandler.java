@@ -0,0 +1,74 @@
+package com.zjz.codec;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 心跳处理器，放在{@link io.netty.handler.timeout.IdleStateHandler}之后，客户端和服务端共用。
+ * <ul>
+ *     <li>连接一段时间没有任何读写时发送{@link Heartbeat#PING}，只有客户端配置了该空闲时间；</li>
+ *     <li>收到PING时立即回复{@link Heartbeat#PONG}，PONG本身只用于刷新读空闲计时，不再向后传递；</li>
+ *     <li>读空闲超时说明对端已经失联（包括半开连接），关闭连接：客户端随后重新建立连接，服务端回收连接占用的资源；</li>
+ *     <li>客户端开启版本协商时，连接建立后发送{@link Heartbeat#VERSION_PROBE}；收到探测时回复{@link Heartbeat#VERSION_ACK}。</li>
+ * </ul>
+ */
+@Slf4j
+public class HeartbeatHandler extends ChannelDuplexHandler {
+
+    // 连接建立后是否发送版本探测
+    private final boolean probeVersion;
+
+    public HeartbeatHandler() {
+        this(false);
+    }
+
+    /**
+     * @param probeVersion 连接建立后是否发送版本探测，见{@link Protocol}
+     */
+    public HeartbeatHandler(boolean probeVersion) {
+        this.probeVersion = probeVersion;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (probeVersion) {
+            ctx.writeAndFlush(Heartbeat.VERSION_PROBE).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg == Heartbeat.PING) {
+            ctx.writeAndFlush(Heartbeat.PONG).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            return;
+        }
+        if (msg == Heartbeat.VERSION_PROBE) {
+            ctx.writeAndFlush(Heartbeat.VERSION_ACK).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            return;
+        }
+        if (msg == Heartbeat.PONG) {
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (!(evt instanceof IdleStateEvent)) {
+            ctx.fireUserEventTriggered(evt);
+            return;
+        }
+        IdleState state = ((IdleStateEvent) evt).state();
+        if (state == IdleState.READER_IDLE) {
+            log.warn("连接长时间未收到数据，关闭连接: {}", ctx.channel().remoteAddress());
+            ctx.close();
+        } else {
+            ctx.writeAndFlush(Heartbeat.PING).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+    }
+}
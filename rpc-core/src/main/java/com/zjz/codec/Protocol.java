@@ -0,0 +1,307 @@
+package com.zjz.codec;
+
+import com.zjz.entity.RpcRequest;
+import com.zjz.entity.RpcResponse;
+import com.zjz.enums.PackageType;
+import com.zjz.enums.RpcError;
+import com.zjz.exception.RpcException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AttributeKey;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 协议的两个版本的帧格式常量，以及v2帧的读写工具。
+ * <p>
+ * v1帧：魔数(4) + 包类型(4) + 序列化器编号(4，最高字节为压缩算法) + 请求号(8) + 数据长度(4) + 数据，帧头24字节。
+ * <p>
+ * v2帧：魔数(1) + 版本(1) + 标志(1) + 编码(1) + 数据长度(4) + 数据，帧头8字节。
+ * 标志的低3位为包类型，{@link #FLAG_ATTACHMENTS}表示带有附加信息，其余位保留给以后的特性，目前必须为0；
+ * 编码的低4位为序列化器编号，高4位为压缩算法编号。
+ * 数据部分为 请求号(varint) + [附加信息] + 消息体，压缩时只压缩消息体；
+ * 批量帧的数据部分依次为每条消息的 请求号(varint) + [附加信息] + 消息体长度(4) + 消息体，压缩时整体压缩。
+ * 附加信息为 条数(varint) + 每条的 键长度(varint) + 键 + 值长度(varint) + 值，键和值使用UTF-8编码。
+ * <p>
+ * 两个版本帧的第一个字节不同，解码器按第一个字节区分版本，服务端按请求使用的版本返回响应，
+ * 因此升级后的服务端可以同时服务新旧两个版本的客户端。
+ * <p>
+ * 版本协商：v1的PING帧不使用请求号字段，客户端在其中写入自己支持的最高版本作为版本探测，
+ * 支持v2的服务端以v2的PONG回复，客户端收到后改用v2；只支持v1的服务端把探测当作普通心跳，以v1的PONG回复。
+ */
+public final class Protocol {
+
+    public static final int VERSION_1 = 1;
+    public static final int VERSION_2 = 2;
+
+    public static final int MAGIC_NUMBER = 0xCAFEBABE;
+    // v1魔数的第一个字节
+    public static final byte MAGIC_V1 = (byte) (MAGIC_NUMBER >>> 24);
+    public static final byte MAGIC_V2 = (byte) 0xDA;
+
+    public static final int V1_HEADER_LENGTH = 24;
+    public static final int V1_SERIALIZER_FIELD_OFFSET = 8;
+    public static final int V1_REQUEST_ID_OFFSET = 12;
+    public static final int V1_LENGTH_FIELD_OFFSET = 20;
+
+    public static final int V2_HEADER_LENGTH = 8;
+    public static final int V2_VERSION_OFFSET = 1;
+    public static final int V2_CODEC_OFFSET = 3;
+    public static final int V2_LENGTH_FIELD_OFFSET = 4;
+
+    // 标志中表示包类型的部分
+    public static final int TYPE_MASK = 0x07;
+    // 消息带有附加信息
+    public static final int FLAG_ATTACHMENTS = 0x08;
+    private static final int RESERVED_FLAGS = ~(TYPE_MASK | FLAG_ATTACHMENTS) & 0xFF;
+    // 编码中压缩算法编号的位置
+    private static final int COMPRESSOR_SHIFT = 4;
+    private static final int SERIALIZER_MASK = 0x0F;
+    // 一条消息最多携带的附加信息条数
+    private static final int MAX_ATTACHMENTS = 256;
+
+    // 对端最近一次发来的帧使用的协议版本，由解码器设置，编码器按此选择响应的版本
+    public static final AttributeKey<Integer> PEER_VERSION = AttributeKey.valueOf("peerProtocolVersion");
+    // 对端发来过的帧中最高的协议版本，说明对端能够解码该版本
+    public static final AttributeKey<Integer> PEER_MAX_VERSION = AttributeKey.valueOf("peerMaxProtocolVersion");
+    // 对端最近一次发来的压缩帧使用的压缩算法，由解码器设置，说明对端能够解压该算法
+    public static final AttributeKey<Integer> PEER_COMPRESSOR = AttributeKey.valueOf("peerCompressor");
+
+    private Protocol() {
+    }
+
+    /**
+     * 根据帧的第一个字节判断协议版本
+     *
+     * @return 协议版本，不是本框架的帧时返回-1
+     */
+    public static int version(byte firstByte) {
+        if (firstByte == MAGIC_V1) {
+            return VERSION_1;
+        }
+        if (firstByte == MAGIC_V2) {
+            return VERSION_2;
+        }
+        return -1;
+    }
+
+    public static int headerLength(int version) {
+        return version == VERSION_2 ? V2_HEADER_LENGTH : V1_HEADER_LENGTH;
+    }
+
+    public static int lengthFieldOffset(int version) {
+        return version == VERSION_2 ? V2_LENGTH_FIELD_OFFSET : V1_LENGTH_FIELD_OFFSET;
+    }
+
+    /**
+     * 写出v2帧头，数据长度先写为0，由调用方在数据写完后回填
+     */
+    public static void writeHeader(ByteBuf out, int packageType, int flags, int serializerCode, int compressorCode) {
+        out.writeByte(MAGIC_V2);
+        out.writeByte(VERSION_2);
+        out.writeByte(packageType | flags);
+        out.writeByte(codec(serializerCode, compressorCode));
+        out.writeInt(0);
+    }
+
+    public static int codec(int serializerCode, int compressorCode) {
+        return serializerCode | compressorCode << COMPRESSOR_SHIFT;
+    }
+
+    public static int serializerCode(int codec) {
+        return codec & SERIALIZER_MASK;
+    }
+
+    public static int compressorCode(int codec) {
+        return (codec & 0xFF) >>> COMPRESSOR_SHIFT;
+    }
+
+    /**
+     * 读取v2帧头中的标志并检查保留位
+     */
+    public static int readFlags(ByteBuf in) {
+        return checkFlags(in.readUnsignedByte());
+    }
+
+    /**
+     * 检查标志中的保留位，对端使用了本版本不认识的特性时拒绝处理
+     */
+    public static int checkFlags(int flags) {
+        if ((flags & RESERVED_FLAGS) != 0) {
+            throw new RpcException(RpcError.UNKNOWN_PROTOCOL, "不支持的标志: " + flags);
+        }
+        return flags;
+    }
+
+    /**
+     * 写出无符号varint，每字节低7位为数据，最高位表示后面还有字节
+     */
+    public static void writeVarLong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(ByteBuf in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new RpcException(RpcError.UNKNOWN_PROTOCOL, "varint过长");
+    }
+
+    /**
+     * 读取表示长度或条数的varint，超过int范围时视为非法数据
+     */
+    public static int readVarInt(ByteBuf in) {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new RpcException(RpcError.UNKNOWN_PROTOCOL, "长度不合法: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * 判断帧是否为版本探测：请求号字段为v2及以上的v1 PING帧
+     *
+     * @param frame 完整的帧
+     */
+    public static boolean isVersionProbe(byte[] frame) {
+        if (frame[0] != MAGIC_V1 || frame.length != V1_HEADER_LENGTH) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.wrap(frame);
+        return header.getInt(4) == PackageType.HEARTBEAT_PING.getCode() && header.getLong(V1_REQUEST_ID_OFFSET) >= VERSION_2;
+    }
+
+    /**
+     * 版本探测帧，与{@link CommonEncoder}编码的{@link Heartbeat#VERSION_PROBE}相同
+     */
+    public static byte[] versionProbeFrame(int serializerCode) {
+        ByteBuffer frame = ByteBuffer.allocate(V1_HEADER_LENGTH);
+        frame.putInt(MAGIC_NUMBER);
+        frame.putInt(PackageType.HEARTBEAT_PING.getCode());
+        frame.putInt(serializerCode);
+        frame.putLong(VERSION_2);
+        frame.putInt(0);
+        return frame.array();
+    }
+
+    /**
+     * 版本探测的回复：v2的PONG帧，与{@link CommonEncoder}编码的{@link Heartbeat#VERSION_ACK}相同
+     */
+    public static byte[] versionAckFrame() {
+        byte[] frame = new byte[V2_HEADER_LENGTH];
+        writeHeader(Unpooled.wrappedBuffer(frame).clear(), PackageType.HEARTBEAT_PONG.getCode(), 0, 0, 0);
+        return frame;
+    }
+
+    /**
+     * 读取帧中的请求号，用于在反序列化之前回复请求
+     *
+     * @param frame 完整的帧
+     */
+    public static long peekRequestId(byte[] frame) {
+        if (frame[0] == MAGIC_V2) {
+            long value = 0;
+            for (int i = V2_HEADER_LENGTH, shift = 0; i < frame.length && shift < 64; i++, shift += 7) {
+                value |= (long) (frame[i] & 0x7F) << shift;
+                if (frame[i] >= 0) {
+                    break;
+                }
+            }
+            return value;
+        }
+        return ByteBuffer.wrap(frame).getLong(V1_REQUEST_ID_OFFSET);
+    }
+
+    /**
+     * 读取帧头中的压缩算法编号
+     *
+     * @param frame 完整的帧
+     */
+    public static int peekCompressor(byte[] frame) {
+        if (frame[0] == MAGIC_V2) {
+            return compressorCode(frame[V2_CODEC_OFFSET]);
+        }
+        return (frame[V1_SERIALIZER_FIELD_OFFSET] & 0xFF);
+    }
+
+    public static long requestId(Object msg) {
+        return msg instanceof RpcRequest ? ((RpcRequest) msg).getRequestId() : ((RpcResponse<?>) msg).getRequestId();
+    }
+
+    public static Map<String, String> attachments(Object msg) {
+        return msg instanceof RpcRequest ? ((RpcRequest) msg).getAttachments() : ((RpcResponse<?>) msg).getAttachments();
+    }
+
+    /**
+     * 把帧头中传输的请求号和附加信息设置到反序列化得到的消息上
+     */
+    public static void setHeaderFields(Object msg, long requestId, Map<String, String> attachments) {
+        if (msg instanceof RpcRequest) {
+            ((RpcRequest) msg).setRequestId(requestId);
+            ((RpcRequest) msg).setAttachments(attachments);
+        } else {
+            ((RpcResponse<?>) msg).setRequestId(requestId);
+            ((RpcResponse<?>) msg).setAttachments(attachments);
+        }
+    }
+
+    public static boolean hasAttachments(Object msg) {
+        Map<String, String> attachments = attachments(msg);
+        return attachments != null && !attachments.isEmpty();
+    }
+
+    /**
+     * 写出附加信息，为null时写出0条
+     */
+    public static void writeAttachments(ByteBuf out, Map<String, String> attachments) {
+        if (attachments == null) {
+            out.writeByte(0);
+            return;
+        }
+        writeVarLong(out, attachments.size());
+        for (Map.Entry<String, String> entry : attachments.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    public static Map<String, String> readAttachments(ByteBuf in) {
+        int count = readVarInt(in);
+        if (count == 0) {
+            return null;
+        }
+        if (count > MAX_ATTACHMENTS) {
+            throw new RpcException(RpcError.UNKNOWN_PROTOCOL, "附加信息过多: " + count);
+        }
+        Map<String, String> attachments = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            attachments.put(readString(in), readString(in));
+        }
+        return attachments;
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = readVarInt(in);
+        String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+}
@@ -0,0 +1,68 @@
+package com.zjz.compress;
+
+/**
+ * 消息体压缩算法。
+ * 压缩后的消息体格式为：原始长度(4) + 压缩数据。使用的算法编号在两个版本的帧中位置不同：
+ * v1帧放在帧头序列化器编号字段的最高字节（见{@link #HEADER_SHIFT}），没有压缩的帧该字节为0，与旧版本的帧格式兼容；
+ * v2帧放在编码字节的高4位，见{@link com.zjz.codec.Protocol#compressorCode(int)}。
+ * 解码时按编号找到对应的算法解压。
+ * 实现直接在调用方提供的字节数组上读写，以便解码器解压到池化的缓冲区中；实例会被多个线程同时使用，必须是线程安全的。
+ */
+public interface Compressor {
+
+    /**
+     * 压缩不超过输出上限的数据。
+     *
+     * @param src 原始数据所在的数组
+     * @param srcOff 原始数据的起始位置
+     * @param srcLen 原始数据的长度
+     * @param dst 输出数组，从dstOff开始至少有{@link #maxCompressedLength(int)}字节可用
+     * @param dstOff 输出的起始位置
+     * @return 压缩后的长度
+     */
+    int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff);
+
+    /**
+     * 解压数据，解压结果的长度必须恰好为originalLength，不会写出该范围之外的字节。
+     *
+     * @param src 压缩数据所在的数组
+     * @param srcOff 压缩数据的起始位置
+     * @param srcLen 压缩数据的长度
+     * @param dst 输出数组
+     * @param dstOff 输出的起始位置
+     * @param originalLength 原始数据的长度
+     * @throws com.zjz.exception.RpcException 数据损坏时抛出
+     */
+    void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int originalLength);
+
+    /**
+     * 压缩给定长度的数据最多需要的输出空间
+     */
+    int maxCompressedLength(int length);
+
+    int getCode();
+
+    Integer NO_COMPRESSOR = 0;
+    Integer GZIP_COMPRESSOR = 1;
+    Integer SNAPPY_COMPRESSOR = 2;
+    Integer LZ4_COMPRESSOR = 3;
+    // 只用于编码器的配置：使用对端最近一次发来的压缩帧所用的算法，对端没有发来过压缩帧时不压缩
+    Integer FOLLOW_PEER = -1;
+
+    // v1帧中压缩算法编号在帧头序列化器编号字段中的位置，v2帧见Protocol#compressorCode
+    int HEADER_SHIFT = 24;
+    // v1帧序列化器编号字段中表示序列化器的部分
+    int SERIALIZER_MASK = (1 << HEADER_SHIFT) - 1;
+    // 默认的压缩阈值，消息体小于该大小时不压缩
+    int DEFAULT_THRESHOLD = 4096;
+
+    /**
+     * 根据编号获取压缩算法，返回的是{@link CompressorRegistry}中共享的实例。
+     *
+     * @param code 压缩算法编号
+     * @return 对应的压缩算法，编号为{@link #NO_COMPRESSOR}或未知时返回null
+     */
+    static Compressor getByCode(int code) {
+        return CompressorRegistry.get(code);
+    }
+}
@@ -0,0 +1,37 @@
+package com.zjz.compress;
+
+/**
+ * 压缩算法注册表，按编号保存共享的压缩算法实例，编号即数组下标，0表示不压缩。
+ */
+public final class CompressorRegistry {
+
+    private static final Compressor[] COMPRESSORS;
+
+    static {
+        Compressor[] compressors = {
+                new GzipCompressor(),
+                new SnappyCompressor(),
+                new Lz4Compressor()
+        };
+        COMPRESSORS = new Compressor[compressors.length + 1];
+        for (Compressor compressor : compressors) {
+            COMPRESSORS[compressor.getCode()] = compressor;
+        }
+    }
+
+    private CompressorRegistry() {
+    }
+
+    /**
+     * 根据编号获取共享的压缩算法实例。
+     *
+     * @param code 压缩算法编号
+     * @return 对应的压缩算法，不压缩或编号未知时返回null
+     */
+    public static Compressor get(int code) {
+        if (code <= 0 || code >= COMPRESSORS.length) {
+            return null;
+        }
+        return COMPRESSORS[code];
+    }
+}
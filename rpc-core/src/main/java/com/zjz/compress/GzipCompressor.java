@@ -0,0 +1,103 @@
+package com.zjz.compress;
+
+import com.zjz.enums.CompressorCode;
+import com.zjz.enums.RpcError;
+import com.zjz.exception.RpcException;
+
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 基于JDK Deflater的gzip压缩，输出标准的gzip格式（固定帧头 + DEFLATE数据 + CRC32和原始长度）。
+ * Deflater/Inflater持有本地内存，创建成本较高，按线程缓存复用；使用最快的压缩级别，以压缩率换取CPU。
+ */
+public class GzipCompressor implements Compressor {
+
+    // 不带文件名、注释等可选字段的gzip帧头
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int HEADER_LENGTH = HEADER.length;
+    // CRC32(4) + 原始长度(4)
+    private static final int TRAILER_LENGTH = 8;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    @Override
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        System.arraycopy(HEADER, 0, dst, dstOff, HEADER_LENGTH);
+        int limit = dstOff + maxCompressedLength(srcLen) - TRAILER_LENGTH;
+        int dp = dstOff + HEADER_LENGTH;
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(src, srcOff, srcLen);
+        deflater.finish();
+        while (!deflater.finished()) {
+            if (dp == limit) {
+                throw new IllegalStateException("gzip输出超过预留空间");
+            }
+            dp += deflater.deflate(dst, dp, limit - dp);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(src, srcOff, srcLen);
+        dp = writeIntLE(dst, dp, (int) crc.getValue());
+        dp = writeIntLE(dst, dp, srcLen);
+        return dp - dstOff;
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int originalLength) {
+        if (srcLen < HEADER_LENGTH + TRAILER_LENGTH || src[srcOff] != HEADER[0] || src[srcOff + 1] != HEADER[1]
+                || src[srcOff + 2] != HEADER[2] || src[srcOff + 3] != 0) {
+            throw new RpcException(RpcError.DECOMPRESSION_FAILED, "gzip帧头不合法");
+        }
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        // 连同帧尾一起交给Inflater，DEFLATE数据结束后多余的输入不会被读取
+        inflater.setInput(src, srcOff + HEADER_LENGTH, srcLen - HEADER_LENGTH);
+        int dp = dstOff;
+        int end = dstOff + originalLength;
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(dst, dp, end - dp);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary() || dp == end)) {
+                    break;
+                }
+                dp += n;
+            }
+        } catch (DataFormatException e) {
+            throw new RpcException(RpcError.DECOMPRESSION_FAILED, "gzip数据损坏: " + e.getMessage());
+        }
+        int trailer = srcOff + srcLen - TRAILER_LENGTH;
+        CRC32 crc = new CRC32();
+        crc.update(dst, dstOff, dp - dstOff);
+        if (!inflater.finished() || dp != end || readIntLE(src, trailer) != (int) crc.getValue()
+                || readIntLE(src, trailer + 4) != originalLength) {
+            throw new RpcException(RpcError.DECOMPRESSION_FAILED, "gzip数据不完整或校验失败");
+        }
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        // zlib的deflateBound加上gzip帧头和帧尾
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + HEADER_LENGTH + TRAILER_LENGTH;
+    }
+
+    @Override
+    public int getCode() {
+        return CompressorCode.GZIP.getCode();
+    }
+
+    private static int writeIntLE(byte[] dst, int dp, int value) {
+        dst[dp] = (byte) value;
+        dst[dp + 1] = (byte) (value >>> 8);
+        dst[dp + 2] = (byte) (value >>> 16);
+        dst[dp + 3] = (byte) (value >>> 24);
+        return dp + 4;
+    }
+
+    private static int readIntLE(byte[] src, int sp) {
+        return (src[sp] & 0xFF) | (src[sp + 1] & 0xFF) << 8 | (src[sp + 2] & 0xFF) << 16 | (src[sp + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,197 @@
+package com.zjz.compress;
+
+import com.zjz.enums.CompressorCode;
+import com.zjz.enums.RpcError;
+import com.zjz.exception.RpcException;
+
+import java.util.Arrays;
+
+/**
+ * 纯Java实现的LZ4块格式压缩，输出可以被其他实现的LZ4块解压器解压。
+ * 压缩使用单个哈希表贪心查找4字节匹配，未命中的区域逐渐增大步长跳过，压缩率与LZ4的快速模式相近。
+ * 每一段为：标记(1) + 字面量长度扩展 + 字面量 + 匹配偏移(2，小端) + 匹配长度扩展，最后一段只有字面量。
+ */
+public class Lz4Compressor implements Compressor {
+
+    private static final int MIN_MATCH = 4;
+    // 最后5个字节必须是字面量
+    private static final int LAST_LITERALS = 5;
+    // 最后一个匹配必须在距结尾12字节之前开始
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_LOG = 12;
+    // 连续未命中时每多64字节步长加1
+    private static final int SKIP_STRENGTH = 6;
+    private static final int RUN_MASK = 15;
+
+    // 哈希表保存输入中的位置，按线程复用，每次压缩前重置
+    private static final ThreadLocal<int[]> HASH_TABLE = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    @Override
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        int srcEnd = srcOff + srcLen;
+        int anchor = srcOff;
+        int dp = dstOff;
+        if (srcLen > MF_LIMIT) {
+            int[] table = HASH_TABLE.get();
+            // 初始值与任何位置的距离都超过最大偏移，不会被当作匹配
+            Arrays.fill(table, srcOff - MAX_DISTANCE - 1);
+            int matchLimit = srcEnd - LAST_LITERALS;
+            int mfLimit = srcEnd - MF_LIMIT;
+            int i = srcOff;
+            while (i < mfLimit) {
+                int sequence = readInt(src, i);
+                int h = hash(sequence);
+                int ref = table[h];
+                table[h] = i;
+                if (i - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    i += 1 + ((i - anchor) >>> SKIP_STRENGTH);
+                    continue;
+                }
+                // 向前扩展到上一段的末尾
+                while (i > anchor && ref > srcOff && src[i - 1] == src[ref - 1]) {
+                    i--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (i + matchLength < matchLimit && src[i + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+                dp = writeSequence(src, anchor, i - anchor, dst, dp, i - ref, matchLength);
+                i += matchLength;
+                anchor = i;
+                // 把匹配末尾附近的位置也放进哈希表，便于紧接着的重复数据命中
+                if (i < mfLimit) {
+                    table[hash(readInt(src, i - 2))] = i - 2;
+                }
+            }
+        }
+        // 剩余的数据作为最后一段字面量
+        int literalLength = srcEnd - anchor;
+        int tokenIndex = dp++;
+        dst[tokenIndex] = 0;
+        dp = writeLength(dst, tokenIndex, dp, literalLength, 4);
+        System.arraycopy(src, anchor, dst, dp, literalLength);
+        return dp + literalLength - dstOff;
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int originalLength) {
+        int sp = srcOff;
+        int srcEnd = srcOff + srcLen;
+        int dp = dstOff;
+        int dstEnd = dstOff + originalLength;
+        while (sp < srcEnd) {
+            int token = src[sp++] & 0xFF;
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK) {
+                int b;
+                do {
+                    if (sp >= srcEnd) {
+                        throw corrupted();
+                    }
+                    b = src[sp++] & 0xFF;
+                    literalLength += b;
+                } while (b == 255 && literalLength <= srcEnd - sp);
+            }
+            if (literalLength > srcEnd - sp || literalLength > dstEnd - dp) {
+                throw corrupted();
+            }
+            System.arraycopy(src, sp, dst, dp, literalLength);
+            sp += literalLength;
+            dp += literalLength;
+            if (sp == srcEnd) {
+                // 最后一段没有匹配
+                break;
+            }
+            if (srcEnd - sp < 2) {
+                throw corrupted();
+            }
+            int offset = (src[sp] & 0xFF) | (src[sp + 1] & 0xFF) << 8;
+            sp += 2;
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK) {
+                int b;
+                do {
+                    if (sp >= srcEnd) {
+                        throw corrupted();
+                    }
+                    b = src[sp++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255 && matchLength <= dstEnd - dp);
+            }
+            matchLength += MIN_MATCH;
+            int ref = dp - offset;
+            if (offset == 0 || ref < dstOff || matchLength > dstEnd - dp) {
+                throw corrupted();
+            }
+            if (offset >= matchLength) {
+                System.arraycopy(dst, ref, dst, dp, matchLength);
+            } else {
+                // 重叠的匹配需要逐字节复制，前面复制出的字节会被后面再次引用
+                for (int k = 0; k < matchLength; k++) {
+                    dst[dp + k] = dst[ref + k];
+                }
+            }
+            dp += matchLength;
+        }
+        if (dp != dstEnd) {
+            throw corrupted();
+        }
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    @Override
+    public int getCode() {
+        return CompressorCode.LZ4.getCode();
+    }
+
+    /**
+     * 写出一段：标记 + 字面量长度扩展 + 字面量 + 偏移 + 匹配长度扩展
+     */
+    private static int writeSequence(byte[] src, int literalOff, int literalLength, byte[] dst, int dp,
+                                     int offset, int matchLength) {
+        int tokenIndex = dp++;
+        dst[tokenIndex] = 0;
+        dp = writeLength(dst, tokenIndex, dp, literalLength, 4);
+        System.arraycopy(src, literalOff, dst, dp, literalLength);
+        dp += literalLength;
+        dst[dp++] = (byte) offset;
+        dst[dp++] = (byte) (offset >>> 8);
+        return writeLength(dst, tokenIndex, dp, matchLength - MIN_MATCH, 0);
+    }
+
+    /**
+     * 把长度写入标记的高4位或低4位，超过15的部分以若干个255加上余数的形式追加在dp处
+     */
+    private static int writeLength(byte[] dst, int tokenIndex, int dp, int length, int shift) {
+        if (length < RUN_MASK) {
+            dst[tokenIndex] |= (byte) (length << shift);
+            return dp;
+        }
+        dst[tokenIndex] |= (byte) (RUN_MASK << shift);
+        length -= RUN_MASK;
+        while (length >= 255) {
+            dst[dp++] = (byte) 255;
+            length -= 255;
+        }
+        dst[dp++] = (byte) length;
+        return dp;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int readInt(byte[] src, int i) {
+        return (src[i] & 0xFF) | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF) << 16 | (src[i + 3] & 0xFF) << 24;
+    }
+
+    private static RpcException corrupted() {
+        return new RpcException(RpcError.DECOMPRESSION_FAILED, "lz4数据损坏");
+    }
+}
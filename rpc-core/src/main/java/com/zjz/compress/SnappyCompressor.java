@@ -0,0 +1,50 @@
+package com.zjz.compress;
+
+import com.zjz.enums.CompressorCode;
+import com.zjz.enums.RpcError;
+import com.zjz.exception.RpcException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.DecompressionException;
+import org.iq80.snappy.Snappy;
+
+/**
+ * Snappy压缩，压缩率低于gzip，但压缩和解压都快得多，输出为标准的Snappy块格式。
+ * 压缩使用iq80 Snappy（纯Java实现）；解压使用Netty的Snappy解码器：iq80的解压以整个输出数组的长度为界，
+ * 会写到输出范围之后，遇到损坏的数据还可能陷入死循环，而Netty的解码器写入容量固定为原始长度的缓冲区，
+ * 校验每个复制的偏移量，数据不完整时停止解码，可以直接解压到池化缓冲区中。
+ */
+public class SnappyCompressor implements Compressor {
+
+    @Override
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        return Snappy.compress(src, srcOff, srcLen, dst, dstOff);
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int originalLength) {
+        ByteBuf in = Unpooled.wrappedBuffer(src, srcOff, srcLen);
+        // 输出缓冲区的最大容量就是原始长度，解码器无法写到范围之外
+        ByteBuf out = Unpooled.wrappedBuffer(dst, dstOff, originalLength).clear();
+        try {
+            // 解码器带有状态，每次解压使用新的实例
+            new io.netty.handler.codec.compression.Snappy().decode(in, out);
+        } catch (DecompressionException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            // 损坏的字面量长度可能溢出为负数，Netty的缓冲区以IllegalArgumentException拒绝
+            throw new RpcException(RpcError.DECOMPRESSION_FAILED, "snappy数据损坏: " + e.getMessage());
+        }
+        if (in.isReadable() || out.writerIndex() != originalLength) {
+            throw new RpcException(RpcError.DECOMPRESSION_FAILED, "snappy数据损坏");
+        }
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return Snappy.maxCompressedLength(length);
+    }
+
+    @Override
+    public int getCode() {
+        return CompressorCode.SNAPPY.getCode();
+    }
+}
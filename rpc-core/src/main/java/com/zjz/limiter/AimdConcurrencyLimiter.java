@@ -0,0 +1,104 @@
+package com.zjz.limiter;
+
+import lombok.Builder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 根据观测到的延迟自适应调整上限的并发限制器（加性增、乘性减）。
+ * <p>
+ * 记录一段时间内的最小延迟作为无排队时的基准，
+ * 某次执行的延迟超过基准的tolerance倍时认为服务端开始排队，上限乘以backoffRatio快速收缩；
+ * 否则在并发接近上限时上限加1缓慢增长。这样上限会稳定在延迟开始上升的拐点附近，过载时尾延迟保持有界。
+ * 一次拥塞会让同时在途的一批请求都变慢，因此收缩后至少再经过与原上限相同次数的采样才会再次收缩，
+ * 避免同一次拥塞把上限连续压到下界。
+ * 每probeInterval次采样重置一次基准，以适应服务本身延迟的变化。
+ * 被拒绝或执行失败的请求通过{@link #releaseIgnored()}归还，不参与采样，以免过短的耗时拉低基准。
+ * </p>
+ */
+public class AimdConcurrencyLimiter implements ConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double tolerance;
+    private final int probeInterval;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    // 以下状态只在持有锁时修改
+    private long minLatencyNanos = Long.MAX_VALUE;
+    private int samples;
+    // 距离下一次允许收缩还需的采样数
+    private int backoffCooldown;
+
+    /**
+     * @param initialLimit 初始上限
+     * @param minLimit 上限的下界
+     * @param maxLimit 上限的上界
+     * @param backoffRatio 延迟升高时上限的收缩比例
+     * @param tolerance 延迟超过基准多少倍时收缩上限
+     * @param probeInterval 每多少次采样重置一次延迟基准
+     */
+    @Builder
+    public AimdConcurrencyLimiter(Integer initialLimit, Integer minLimit, Integer maxLimit,
+                                  Double backoffRatio, Double tolerance, Integer probeInterval) {
+        this.minLimit = minLimit != null ? minLimit : 1;
+        this.maxLimit = maxLimit != null ? maxLimit : 1000;
+        this.backoffRatio = backoffRatio != null ? backoffRatio : 0.9;
+        this.tolerance = tolerance != null ? tolerance : 2.0;
+        this.probeInterval = probeInterval != null ? probeInterval : 1000;
+        this.limit = initialLimit != null ? initialLimit : 20;
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void release(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (++samples >= probeInterval) {
+                samples = 0;
+                minLatencyNanos = Long.MAX_VALUE;
+            }
+            if (latencyNanos < minLatencyNanos) {
+                minLatencyNanos = latencyNanos;
+            }
+            if (backoffCooldown > 0) {
+                backoffCooldown--;
+            }
+            int newLimit = limit;
+            if (latencyNanos > minLatencyNanos * tolerance) {
+                if (backoffCooldown == 0) {
+                    newLimit = Math.max(minLimit, (int) (limit * backoffRatio));
+                    backoffCooldown = limit;
+                }
+            } else if (current * 2 >= limit) {
+                // 只在上限被充分使用时增长，避免空闲时上限无限升高
+                newLimit = Math.min(maxLimit, limit + 1);
+            }
+            limit = newLimit;
+        }
+    }
+
+    @Override
+    public void releaseIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+}
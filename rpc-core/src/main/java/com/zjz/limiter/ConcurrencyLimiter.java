@@ -0,0 +1,34 @@
+package com.zjz.limiter;
+
+/**
+ * 并发限制器，限制同时执行的请求数，超过限制的请求立即被拒绝而不是排队。
+ * 实现类会被多个线程同时调用，必须是线程安全的。
+ */
+public interface ConcurrencyLimiter {
+
+    /**
+     * 尝试获取一个执行许可。
+     *
+     * @return 获取成功返回true，已达到并发上限返回false
+     */
+    boolean tryAcquire();
+
+    /**
+     * 请求执行完成后归还许可，并提供本次执行的耗时供自适应的实现调整并发上限。
+     * 只有{@link #tryAcquire()}成功的请求才能调用。
+     *
+     * @param latencyNanos 执行耗时，单位纳秒
+     */
+    void release(long latencyNanos);
+
+    /**
+     * 归还许可但不提供耗时，用于被拒绝或执行失败的请求，这些请求的耗时不能反映服务的处理能力，
+     * 不应参与自适应实现对上限的调整。只有{@link #tryAcquire()}成功的请求才能调用。
+     */
+    void releaseIgnored();
+
+    /**
+     * @return 当前的并发上限
+     */
+    int getLimit();
+}
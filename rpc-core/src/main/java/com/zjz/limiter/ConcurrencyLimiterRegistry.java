@@ -0,0 +1,84 @@
+package com.zjz.limiter;
+
+import com.zjz.entity.RpcResponse;
+import com.zjz.enums.ResponseCode;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 按“服务名#方法名”保存并发限制器，首次使用时通过工厂创建。
+ */
+public class ConcurrencyLimiterRegistry {
+
+    private final Function<String, ConcurrencyLimiter> factory;
+    private final Map<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * @param factory 根据“服务名#方法名”创建限制器，返回null表示该方法不限制
+     */
+    public ConcurrencyLimiterRegistry(Function<String, ConcurrencyLimiter> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @param serviceName 服务名称
+     * @param methodName 方法名称
+     * @return 对应的限制器，不限制时返回null
+     */
+    public ConcurrencyLimiter get(String serviceName, String methodName) {
+        String key = serviceName + "#" + methodName;
+        ConcurrencyLimiter limiter = limiters.get(key);
+        if (limiter == null) {
+            limiter = limiters.computeIfAbsent(key, k -> {
+                ConcurrencyLimiter created = factory.apply(k);
+                return created != null ? created : NoLimit.INSTANCE;
+            });
+        }
+        return limiter == NoLimit.INSTANCE ? null : limiter;
+    }
+
+    /**
+     * 请求完成后归还许可：成功的请求提供从开始处理到完成的耗时，失败的请求不参与采样
+     *
+     * @param limiter 已获取许可的限制器，为null时不做任何事
+     * @param response 请求的响应
+     * @param startNanos 开始处理的时间
+     */
+    public static void release(ConcurrencyLimiter limiter, RpcResponse<?> response, long startNanos) {
+        if (limiter == null) {
+            return;
+        }
+        if (response.getStatusCode() != null && response.getStatusCode() == ResponseCode.SUCCESS.getCode()) {
+            limiter.release(System.nanoTime() - startNanos);
+        } else {
+            limiter.releaseIgnored();
+        }
+    }
+
+    /**
+     * 表示不限制的占位，ConcurrentHashMap中不能存放null
+     */
+    private static final class NoLimit implements ConcurrencyLimiter {
+        private static final NoLimit INSTANCE = new NoLimit();
+
+        @Override
+        public boolean tryAcquire() {
+            return true;
+        }
+
+        @Override
+        public void release(long latencyNanos) {
+        }
+
+        @Override
+        public void releaseIgnored() {
+        }
+
+        @Override
+        public int getLimit() {
+            return Integer.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.zjz.limiter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 固定上限的并发限制器。
+ */
+public class FixedConcurrencyLimiter implements ConcurrencyLimiter {
+
+    private final int limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public FixedConcurrencyLimiter(int limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void release(long latencyNanos) {
+        inFlight.decrementAndGet();
+    }
+
+    @Override
+    public void releaseIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+}
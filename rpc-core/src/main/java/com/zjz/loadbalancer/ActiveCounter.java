@@ -0,0 +1,43 @@
+package com.zjz.loadbalancer;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 记录客户端到每个服务地址正在进行中的调用数，供最少活跃调用负载均衡使用。
+ * 客户端在发出请求时调用{@link #begin}，收到响应或失败后调用{@link #end}。
+ */
+public final class ActiveCounter {
+
+    private static final Map<InetSocketAddress, AtomicInteger> ACTIVE = new ConcurrentHashMap<>();
+
+    private ActiveCounter() {
+    }
+
+    public static void begin(InetSocketAddress address) {
+        counter(address).incrementAndGet();
+    }
+
+    public static void end(InetSocketAddress address) {
+        counter(address).decrementAndGet();
+    }
+
+    /**
+     * @param address 服务地址
+     * @return 该地址上进行中的调用数
+     */
+    public static int get(InetSocketAddress address) {
+        AtomicInteger active = ACTIVE.get(address);
+        return active == null ? 0 : active.get();
+    }
+
+    private static AtomicInteger counter(InetSocketAddress address) {
+        AtomicInteger active = ACTIVE.get(address);
+        if (active == null) {
+            active = ACTIVE.computeIfAbsent(address, k -> new AtomicInteger());
+        }
+        return active;
+    }
+}
@@ -0,0 +1,80 @@
+package com.zjz.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.zjz.entity.RpcRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 一致性哈希负载均衡，相同请求键的调用总是落在同一个实例上，实例增减时只有少部分请求键会迁移。
+ * 每个实例在哈希环上放置多个虚拟节点使分布均匀，哈希环按服务缓存，实例列表变化时重建。
+ * 请求键由{@link LoadBalancer#requestKey}从请求中生成，只有本策略需要，其他策略不会计算。
+ */
+public class ConsistentHashLoadBalancer implements LoadBalancer {
+
+    // 每个实例的虚拟节点数
+    private static final int VIRTUAL_NODES = 160;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    // 服务名称 -> 哈希环
+    private final Map<String, HashRing> rings = new ConcurrentHashMap<>();
+
+    @Override
+    public Instance select(String serviceName, List<Instance> instances, RpcRequest rpcRequest) {
+        if (rpcRequest == null) {
+            return instances.get(ThreadLocalRandom.current().nextInt(instances.size()));
+        }
+        int identity = identity(instances);
+        HashRing ring = rings.get(serviceName);
+        if (ring == null || ring.identity != identity) {
+            ring = new HashRing(instances, identity);
+            rings.put(serviceName, ring);
+        }
+        return ring.select(hash(LoadBalancer.requestKey(rpcRequest)));
+    }
+
+    /**
+     * 以实例地址计算实例列表的标识，用于判断哈希环是否需要重建
+     */
+    private static int identity(List<Instance> instances) {
+        int identity = 1;
+        for (Instance instance : instances) {
+            identity = 31 * identity + Objects.hashCode(instance.toInetAddr());
+        }
+        return identity;
+    }
+
+    private static long hash(String key) {
+        return HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * 不可变的哈希环
+     */
+    private static class HashRing {
+        private final TreeMap<Long, Instance> nodes = new TreeMap<>();
+        private final int identity;
+
+        HashRing(List<Instance> instances, int identity) {
+            this.identity = identity;
+            for (Instance instance : instances) {
+                for (int i = 0; i < VIRTUAL_NODES; i++) {
+                    nodes.put(hash(instance.toInetAddr() + "#" + i), instance);
+                }
+            }
+        }
+
+        Instance select(long hash) {
+            Map.Entry<Long, Instance> entry = nodes.ceilingEntry(hash);
+            return entry != null ? entry.getValue() : nodes.firstEntry().getValue();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.zjz.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.zjz.entity.RpcRequest;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 最少活跃调用负载均衡，选择进行中调用数最少的实例，响应慢的实例会自然地分到更少的请求。
+ * 活跃数由{@link ActiveCounter}统计，活跃数相同的实例之间随机选择。
+ */
+public class LeastActiveLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Instance select(String serviceName, List<Instance> instances, RpcRequest rpcRequest) {
+        Instance selected = null;
+        int leastActive = Integer.MAX_VALUE;
+        // 与最少活跃数相同的实例个数，用于在其中等概率选择
+        int leastCount = 0;
+        for (Instance instance : instances) {
+            int active = ActiveCounter.get(new InetSocketAddress(instance.getIp(), instance.getPort()));
+            if (active < leastActive) {
+                leastActive = active;
+                leastCount = 1;
+                selected = instance;
+            } else if (active == leastActive && ThreadLocalRandom.current().nextInt(++leastCount) == 0) {
+                selected = instance;
+            }
+        }
+        return selected;
+    }
+}
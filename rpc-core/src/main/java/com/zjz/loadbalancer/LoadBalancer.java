@@ -0,0 +1,38 @@
+package com.zjz.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.zjz.entity.RpcRequest;
+
+import java.util.List;
+
+/**
+ * 负载均衡策略，从服务的实例列表中为一次调用选出一个实例。
+ * 实现类会被多个调用线程同时使用，必须是线程安全的。
+ */
+public interface LoadBalancer {
+
+    /**
+     * 选择一个服务实例。
+     *
+     * @param serviceName 服务名称，有状态的策略按服务分别维护状态
+     * @param instances   可用的实例列表，不为空
+     * @param rpcRequest  本次调用的请求，按请求路由的策略（如一致性哈希）从中生成请求键，可以为null
+     * @return 选中的实例
+     */
+    Instance select(String serviceName, List<Instance> instances, RpcRequest rpcRequest);
+
+    /**
+     * 生成请求键：以第一个参数作为键，使相同参数的调用落在同一个实例上；无参数时使用方法名。
+     * 会调用参数的toString，只应由需要请求键的策略在选择时调用。
+     *
+     * @param rpcRequest RPC请求对象
+     * @return 请求键
+     */
+    static String requestKey(RpcRequest rpcRequest) {
+        Object[] parameters = rpcRequest.getParameters();
+        if (parameters != null && parameters.length > 0) {
+            return String.valueOf(parameters[0]);
+        }
+        return rpcRequest.getMethodName();
+    }
+}
@@ -0,0 +1,18 @@
+package com.zjz.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.zjz.entity.RpcRequest;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 随机负载均衡，等概率选择一个实例。
+ */
+public class RandomLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Instance select(String serviceName, List<Instance> instances, RpcRequest rpcRequest) {
+        return instances.get(ThreadLocalRandom.current().nextInt(instances.size()));
+    }
+}
@@ -0,0 +1,53 @@
+package com.zjz.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.zjz.entity.RpcRequest;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 平滑加权轮询负载均衡，权重取Nacos实例的weight。
+ * 每次选择时所有实例的当前权重加上各自的权重，选出当前权重最大的实例并减去总权重，
+ * 这样权重高的实例被选中的次数按比例更多，但不会连续集中地被选中。
+ */
+public class WeightedRoundRobinLoadBalancer implements LoadBalancer {
+
+    // 服务名称 -> 该服务各实例的当前权重
+    private final Map<String, Map<String, Double>> currentWeights = new ConcurrentHashMap<>();
+
+    @Override
+    public Instance select(String serviceName, List<Instance> instances, RpcRequest rpcRequest) {
+        Map<String, Double> weights = currentWeights.computeIfAbsent(serviceName, k -> new HashMap<>());
+        synchronized (weights) {
+            // 实例列表变化后清理已下线实例的状态
+            if (weights.size() > instances.size()) {
+                weights.clear();
+            }
+            double totalWeight = 0;
+            Instance selected = null;
+            double selectedWeight = 0;
+            for (Instance instance : instances) {
+                double weight = instance.getWeight();
+                if (weight <= 0) {
+                    continue;
+                }
+                double current = weights.getOrDefault(instance.toInetAddr(), 0D) + weight;
+                weights.put(instance.toInetAddr(), current);
+                totalWeight += weight;
+                if (selected == null || current > selectedWeight) {
+                    selected = instance;
+                    selectedWeight = current;
+                }
+            }
+            if (selected == null) {
+                // 所有实例权重都为0时退化为选第一个
+                return instances.get(0);
+            }
+            weights.put(selected.toInetAddr(), selectedWeight - totalWeight);
+            return selected;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.zjz.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Netty的传输层实现。
+ * Linux上优先使用原生epoll：边缘触发、更少的系统调用和对象分配，并支持SO_REUSEPORT；
+ * 其他平台或原生库加载失败时退化为NIO。
+ * epoll的原生库已包含在netty-all中，无需额外依赖。
+ */
+@Slf4j
+public enum NettyTransport {
+
+    EPOLL {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, String threadNamePrefix) {
+            return new EpollEventLoopGroup(threads, new DefaultThreadFactory(threadNamePrefix));
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> serverSocketChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+    },
+
+    NIO {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, String threadNamePrefix) {
+            return new NioEventLoopGroup(threads, new DefaultThreadFactory(threadNamePrefix));
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return NioSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> serverSocketChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+    };
+
+    /**
+     * 选择传输层实现
+     *
+     * @param preferNative 是否优先使用原生epoll
+     * @return 可以使用原生epoll且优先使用时返回EPOLL，否则返回NIO
+     */
+    public static NettyTransport select(boolean preferNative) {
+        if (preferNative) {
+            if (Epoll.isAvailable()) {
+                return EPOLL;
+            }
+            log.info("原生epoll不可用，使用NIO: {}", Epoll.unavailabilityCause().toString());
+        }
+        return NIO;
+    }
+
+    /**
+     * 创建事件循环组
+     *
+     * @param threads 线程数，为0时使用Netty的默认值（CPU核数的2倍）
+     * @param threadNamePrefix 线程名字前缀
+     */
+    public abstract EventLoopGroup newEventLoopGroup(int threads, String threadNamePrefix);
+
+    public abstract Class<? extends SocketChannel> socketChannelClass();
+
+    public abstract Class<? extends ServerSocketChannel> serverSocketChannelClass();
+}
@@ -1,69 +1,139 @@
 package com.zjz.netty.client;
 
+import com.zjz.codec.BatchingHandler;
 import com.zjz.codec.CommonDecoder;
 import com.zjz.codec.CommonEncoder;
+import com.zjz.codec.HeartbeatHandler;
+import com.zjz.codec.Protocol;
 import com.zjz.enums.RpcError;
 import com.zjz.exception.RpcException;
 import com.zjz.serializer.CommonSerializer;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.timeout.IdleStateHandler;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
 import java.util.Date;
-import java.util.concurrent.CountDownLatch;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 客户端连接池，按服务端地址和序列化器维护固定数量的长连接。
+ * 活跃的连接直接复用；连接意外关闭（包括心跳检测到的失效连接）或建立失败后从池中移除，
+ * 下次取得该槽位时再懒加载重连，不再使用的服务端地址不会被反复重连。
+ * 建立连接是异步的，调用方不会为每次连接阻塞等待。
+ * 连接池由{@link NettyClientRuntime}创建和关闭。
+ */
 @Slf4j
 public class ChannelProvider {
 
-    private static EventLoopGroup eventLoopGroup;
-    private static Bootstrap bootstrap = initializeBootstrap();
-
     private static final int MAX_RETRY_COUNT = 5;
-    private static Channel channel = null;
+
+    private final int connectionsPerEndpoint;
+    private final long batchWindowMicros;
+    private final int batchMaxMessages;
+    private final long heartbeatIntervalMillis;
+    private final int heartbeatMissLimit;
+    private final int compressor;
+    private final int compressThreshold;
+    private final int protocolVersion;
+    private final Bootstrap bootstrap;
+    private final RequestTimer requestTimer;
+    // 每种序列化器对应一个已安装好ChannelInitializer的Bootstrap，避免每次获取连接都重新设置handler
+    private final Map<Integer, Bootstrap> bootstraps = new ConcurrentHashMap<>();
+    private final Map<ChannelKey, ChannelPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * @param config 客户端配置
+     * @param bootstrap 运行时创建的Bootstrap，已设置事件循环组和连接参数
+     * @param requestTimer 运行时的请求超时定时器
+     */
+    ChannelProvider(NettyClientConfig config, Bootstrap bootstrap, RequestTimer requestTimer) {
+        this.connectionsPerEndpoint = Math.max(1, config.getConnectionsPerEndpoint());
+        this.batchWindowMicros = config.getBatchWindowMicros();
+        this.batchMaxMessages = config.getBatchMaxMessages();
+        this.heartbeatIntervalMillis = config.getHeartbeatIntervalMillis();
+        this.heartbeatMissLimit = Math.max(1, config.getHeartbeatMissLimit());
+        this.compressor = config.getCompressor();
+        this.compressThreshold = config.getCompressThreshold();
+        // 开启版本协商时编码器使用服务端回复过的最高版本
+        this.protocolVersion = config.getProtocolVersion() == Protocol.VERSION_1 && config.isNegotiateVersion()
+                ? CommonEncoder.NEGOTIATE : config.getProtocolVersion();
+        this.bootstrap = bootstrap;
+        this.requestTimer = requestTimer;
+    }
 
     /**
-     * 获取与服务端建立的Channel。
+     * 获取与服务端建立的Channel，必要时阻塞等待连接建立。
      *
      * @param inetSocketAddress 服务端的网络地址。
      * @param serializer 序列化器，用于数据的序列化和反序列化。
      * @return 返回与服务端建立的Channel实例。
+     * @throws RpcException 连接失败时抛出
      */
-    public static Channel get(InetSocketAddress inetSocketAddress, CommonSerializer serializer) {
-        // 初始化Netty客户端的ChannelPipeline
-        bootstrap.handler(new ChannelInitializer<SocketChannel>() {
-            @Override
-            protected void initChannel(SocketChannel ch) {
-                // 添加自定义的编解码器和客户端处理器
-                ch.pipeline().addLast(new CommonEncoder(serializer))
-                        .addLast(new CommonDecoder())
-                        .addLast(new NettyClientHandler());
-            }
-        });
-
-        CountDownLatch countDownLatch = new CountDownLatch(1);
+    public Channel get(InetSocketAddress inetSocketAddress, CommonSerializer serializer) {
         try {
-            // 尝试连接服务端
-            connect(bootstrap, inetSocketAddress, countDownLatch);
-            countDownLatch.await(); // 等待连接完成
+            return getAsync(inetSocketAddress, serializer).get();
         } catch (InterruptedException e) {
             log.error("获取channel时有错误发生:", e);
+            Thread.currentThread().interrupt();
+            throw new RpcException("获取连接被中断", e);
+        } catch (ExecutionException e) {
+            log.error("获取channel时有错误发生:", e.getCause());
+            throw new RpcException(RpcError.CLIENT_CONNECT_SERVER_FAILURE);
         }
-        return channel;
     }
 
     /**
-     * 尝试连接服务端。
+     * 异步获取与服务端建立的Channel。池中已有活跃连接时返回的Future已经完成。
      *
-     * @param bootstrap Netty的启动对象。
      * @param inetSocketAddress 服务端的网络地址。
-     * @param countDownLatch 用于计数和同步的 latch。
+     * @param serializer 序列化器，用于数据的序列化和反序列化。
+     * @return 完成值为可用Channel的Future，连接失败时以异常完成。
      */
-    private static void connect(Bootstrap bootstrap, InetSocketAddress inetSocketAddress, CountDownLatch countDownLatch) {
-        connect(bootstrap, inetSocketAddress, MAX_RETRY_COUNT, countDownLatch); // 默认最大重试次数尝试连接
+    public CompletableFuture<Channel> getAsync(InetSocketAddress inetSocketAddress, CommonSerializer serializer) {
+        ChannelKey key = new ChannelKey(inetSocketAddress, serializer.getCode());
+        return pools.computeIfAbsent(key, k -> new ChannelPool(inetSocketAddress, bootstrapFor(serializer))).acquire();
+    }
+
+    /**
+     * 关闭池中所有连接。
+     */
+    public void close() {
+        pools.values().forEach(ChannelPool::close);
+        pools.clear();
+    }
+
+    private Bootstrap bootstrapFor(CommonSerializer serializer) {
+        return bootstraps.computeIfAbsent(serializer.getCode(), code -> bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                // 添加自定义的编解码器和客户端处理器
+                ChannelPipeline pipeline = ch.pipeline();
+                pipeline.addLast(new CommonEncoder(serializer, compressor, compressThreshold, protocolVersion))
+                        .addLast(new CommonDecoder());
+                if (heartbeatIntervalMillis > 0) {
+                    // 空闲时发送心跳，连续多个间隔收不到数据时关闭连接
+                    pipeline.addLast(new IdleStateHandler(heartbeatIntervalMillis * heartbeatMissLimit, 0,
+                            heartbeatIntervalMillis, TimeUnit.MILLISECONDS));
+                }
+                pipeline.addLast(new HeartbeatHandler(protocolVersion == CommonEncoder.NEGOTIATE));
+                if (batchWindowMicros > 0) {
+                    // 开启批量发送，写出的请求先经过批量处理器再编码
+                    pipeline.addLast(new BatchingHandler(batchWindowMicros, batchMaxMessages, false));
+                }
+                pipeline.addLast(new NettyClientHandler(requestTimer));
+            }
+        }));
     }
 
     /**
@@ -71,47 +141,112 @@ public class ChannelProvider {
      *
      * @param bootstrap Netty的启动对象。
      * @param inetSocketAddress 服务端的网络地址。
-     * @param retry 当前重试次数。
-     * @param countDownLatch 用于计数和同步的 latch。
+     * @param retry 剩余重试次数。
+     * @param promise 连接结果，连接成功或重试次数用完时完成。
      */
-    private static void connect(Bootstrap bootstrap, InetSocketAddress inetSocketAddress, int retry, CountDownLatch countDownLatch) {
+    private static void connect(Bootstrap bootstrap, InetSocketAddress inetSocketAddress, int retry, CompletableFuture<Channel> promise) {
         // 尝试连接并处理连接结果
         bootstrap.connect(inetSocketAddress).addListener((ChannelFutureListener) future -> {
             if (future.isSuccess()) {
                 log.info("客户端连接成功!");
-                channel = future.channel();
-                countDownLatch.countDown(); // 连接成功，计数器减一
+                promise.complete(future.channel());
                 return;
             }
             if (retry == 0) {
                 log.error("客户端连接失败:重试次数已用完，放弃连接！");
-                countDownLatch.countDown(); // 重试次数用完，计数器减一
-                throw new RpcException(RpcError.CLIENT_CONNECT_SERVER_FAILURE);
+                promise.completeExceptionally(new RpcException(RpcError.CLIENT_CONNECT_SERVER_FAILURE));
+                return;
             }
             // 计算下一次重连的延迟时间
             int order = (MAX_RETRY_COUNT - retry) + 1;
             int delay = 1 << order;
             log.error("{}: 连接失败，第 {} 次重连……", new Date(), order);
             // 延迟后再次尝试连接
-            bootstrap.config().group().schedule(() -> connect(bootstrap, inetSocketAddress, retry - 1, countDownLatch), delay, TimeUnit
+            bootstrap.config().group().schedule(() -> connect(bootstrap, inetSocketAddress, retry - 1, promise), delay, TimeUnit
                     .SECONDS);
         });
     }
 
     /**
-     * 初始化Netty的启动对象。
-     *
-     * @return 返回配置好的Bootstrap实例。
+     * 单个服务端地址的连接池，固定数量的槽位按轮询方式分配给调用方。
+     * 每个槽位保存一个连接Future：正在连接时并发的调用方共享同一次连接，连接关闭后槽位被清空。
      */
-    private static Bootstrap initializeBootstrap() {
-        eventLoopGroup = new NioEventLoopGroup(); // 创建事件循环组
-        Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(eventLoopGroup) // 设置事件循环组
-                .channel(NioSocketChannel.class) // 设置使用的通道类
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5000) // 设置连接超时时间
-                .option(ChannelOption.SO_KEEPALIVE, true) // 开启TCP心跳机制
-                .option(ChannelOption.TCP_NODELAY, true); // 禁用Nagle算法
-        return bootstrap;
+    private class ChannelPool {
+
+        private final InetSocketAddress address;
+        private final Bootstrap bootstrap;
+        private final AtomicReferenceArray<CompletableFuture<Channel>> slots;
+        private final AtomicInteger next = new AtomicInteger();
+
+        ChannelPool(InetSocketAddress address, Bootstrap bootstrap) {
+            this.address = address;
+            this.bootstrap = bootstrap;
+            this.slots = new AtomicReferenceArray<>(connectionsPerEndpoint);
+        }
+
+        CompletableFuture<Channel> acquire() {
+            int index = (next.getAndIncrement() & Integer.MAX_VALUE) % slots.length();
+            while (true) {
+                CompletableFuture<Channel> current = slots.get(index);
+                if (current != null && isUsable(current)) {
+                    return current;
+                }
+                CompletableFuture<Channel> promise = new CompletableFuture<>();
+                if (slots.compareAndSet(index, current, promise)) {
+                    open(index, promise);
+                    return promise;
+                }
+                // 其他线程已替换该槽位，重新检查
+            }
+        }
+
+        /**
+         * 正在连接或已连接且仍然活跃的槽位可以直接复用。
+         */
+        private boolean isUsable(CompletableFuture<Channel> future) {
+            if (!future.isDone()) {
+                return true;
+            }
+            if (future.isCompletedExceptionally()) {
+                return false;
+            }
+            return future.getNow(null).isActive();
+        }
+
+        private void open(int index, CompletableFuture<Channel> promise) {
+            connect(bootstrap, address, MAX_RETRY_COUNT, promise);
+            promise.whenComplete((channel, e) -> {
+                if (e != null) {
+                    // 连接失败，清空槽位以便下次重新连接
+                    slots.compareAndSet(index, promise, null);
+                    return;
+                }
+                // 连接意外关闭时清空槽位，下次取得该槽位时再重新连接
+                channel.closeFuture().addListener(future -> {
+                    if (slots.compareAndSet(index, promise, null)) {
+                        log.info("连接已关闭，下次使用时重新连接: {}", address);
+                    }
+                });
+            });
+        }
+
+        void close() {
+            for (int i = 0; i < slots.length(); i++) {
+                CompletableFuture<Channel> future = slots.getAndSet(i, null);
+                if (future != null) {
+                    future.thenAccept(Channel::close);
+                }
+            }
+        }
     }
 
+    /**
+     * 连接池的键：服务端地址加序列化器编号。
+     */
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class ChannelKey {
+        private final InetSocketAddress address;
+        private final int serializerCode;
+    }
 }
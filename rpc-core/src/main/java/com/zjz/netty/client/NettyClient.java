@@ -1,6 +1,9 @@
 package com.zjz.netty.client;
 import com.zjz.enums.RpcError;
 import com.zjz.exception.RpcException;
+import com.zjz.loadbalancer.ActiveCounter;
+import com.zjz.loadbalancer.LoadBalancer;
+import com.zjz.loadbalancer.RandomLoadBalancer;
 import com.zjz.registry.NacosServiceDiscovery;
 import com.zjz.registry.NacosServiceRegistry;
 import com.zjz.registry.ServiceDiscovery;
@@ -9,7 +12,6 @@ import com.zjz.serializer.CommonSerializer;
 import com.zjz.serializer.HessianSerializer;
 import com.zjz.serializer.KryoSerializer;
 import com.zjz.util.RpcMessageChecker;
-import io.netty.bootstrap.Bootstrap;
 import com.zjz.RpcClient;
 import com.zjz.codec.CommonDecoder;
 import com.zjz.codec.CommonEncoder;
@@ -17,102 +19,212 @@ import com.zjz.entity.RpcRequest;
 import com.zjz.entity.RpcResponse;
 import com.zjz.serializer.JsonSerializer;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.util.AttributeKey;
 
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Netty实现的RPC客户端。
+ * 事件循环、连接池和超时定时器由{@link NettyClientRuntime}持有：
+ * 不指定配置时使用共享的默认运行时；指定配置时与配置相同的其他客户端共用一个运行时，
+ * 最后一个客户端{@link #close()}时关闭；也可以显式传入一个运行时，由调用方管理。
  */
 @Slf4j
-public class NettyClient implements RpcClient {
-
-    private static final Bootstrap bootstrap; // Netty的启动引导类
-    private static final EventLoopGroup group;
-
-
-    // 静态初始化块，用于初始化Netty的连接设置
-    static {
-        group = new NioEventLoopGroup();
-        bootstrap = new Bootstrap();
-        bootstrap.group(group)
-                .channel(NioSocketChannel.class)
-                .option(ChannelOption.SO_KEEPALIVE, true);
-    }
+public class NettyClient implements RpcClient, AutoCloseable {
 
     private final ServiceDiscovery serviceDiscovery;
     private final CommonSerializer serializer;
+    private final NettyClientRuntime runtime;
+    // 运行时是否通过acquireShared取得，是则在关闭客户端时归还
+    private final boolean sharedRuntime;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // 请求未指定超时时间时使用的超时时间，单位毫秒
+    private final long requestTimeoutMillis;
     public NettyClient() {
         this(DEFAULT_SERIALIZER);
     }
     public NettyClient(Integer serializer) {
-        this.serviceDiscovery = new NacosServiceDiscovery();
+        this(serializer, new RandomLoadBalancer());
+    }
+    public NettyClient(Integer serializer, NettyClientConfig config) {
+        this(serializer, new RandomLoadBalancer(), config);
+    }
+    public NettyClient(Integer serializer, LoadBalancer loadBalancer) {
+        this(serializer, new NacosServiceDiscovery(loadBalancer), NettyClientRuntime.getDefault());
+    }
+    public NettyClient(Integer serializer, LoadBalancer loadBalancer, NettyClientConfig config) {
+        this(serializer, new NacosServiceDiscovery(loadBalancer), config);
+    }
+    /**
+     * @param serializer 序列化器编号
+     * @param serviceDiscovery 服务发现，例如不依赖Nacos的{@link com.zjz.registry.LocalServiceDiscovery}
+     * @param config 客户端连接配置，与配置相同的其他客户端共用运行时
+     */
+    public NettyClient(Integer serializer, ServiceDiscovery serviceDiscovery, NettyClientConfig config) {
+        this(serializer, serviceDiscovery, NettyClientRuntime.acquireShared(config), true);
+    }
+    /**
+     * @param serializer 序列化器编号
+     * @param serviceDiscovery 服务发现
+     * @param runtime 共用的客户端运行时，由调用方负责启动和关闭
+     */
+    public NettyClient(Integer serializer, ServiceDiscovery serviceDiscovery, NettyClientRuntime runtime) {
+        this(serializer, serviceDiscovery, runtime, false);
+    }
+    private NettyClient(Integer serializer, ServiceDiscovery serviceDiscovery, NettyClientRuntime runtime, boolean sharedRuntime) {
+        this.serviceDiscovery = serviceDiscovery;
         this.serializer = CommonSerializer.getByCode(serializer);
+        this.runtime = runtime;
+        this.sharedRuntime = sharedRuntime;
+        this.requestTimeoutMillis = runtime.getConfig().getRequestTimeoutMillis();
     }
+
     /**
-     * 发送RPC（远程过程调用）请求。
+     * 关闭客户端。按配置共用的运行时被归还，最后一个客户端关闭时运行时随之关闭；
+     * 默认运行时和显式传入的运行时不受影响。重复调用时直接返回。
+     */
+    @Override
+    public void close() {
+        if (sharedRuntime && closed.compareAndSet(false, true)) {
+            runtime.releaseShared();
+        }
+    }
+    /**
+     * 同步发送RPC（远程过程调用）请求，等待{@link #sendRequestAsync(RpcRequest)}返回的Future完成。
+     *
+     * @param rpcRequest RPC请求对象，包含调用的服务接口名和请求数据
+     * @return 返回RPC响应的数据部分
+     * @throws RpcException 连接失败、发送失败或响应校验不通过时抛出
+     */
+    @Override
+    public Object sendRequest(RpcRequest rpcRequest) {
+        try {
+            return sendRequestAsync(rpcRequest).get();
+        } catch (InterruptedException e) {
+            // 记录中断异常日志，并重新设置中断状态
+            log.error("发送消息时有错误发生：", e);
+            Thread.currentThread().interrupt();
+            throw new RpcException("服务调用被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RpcException) {
+                throw (RpcException) e.getCause();
+            }
+            log.error("发送消息时有错误发生：", e.getCause());
+            throw new RpcException("服务调用失败", e.getCause());
+        }
+    }
+
+    /**
+     * 异步发送RPC（远程过程调用）请求。
+     * <p>
+     * 请求通过与服务端之间的长连接发送，连接在多次调用间复用，同一连接上可以同时存在多个未完成的请求。
+     * 发送前按请求号登记一个Future，响应到达后由{@link NettyClientHandler}完成该Future，调用线程不会被阻塞。
+     * 注意Future的回调默认在Netty的IO线程上执行，回调中不应做阻塞操作。
+     * </p>
      * <p>
-     * 本方法负责通过序列化器将RPC请求对象发送给服务端，并接收响应，处理异常情况。
-     * 使用客户端连接池和重试机制以确保连接的稳定性和效率。
+     * 超时时间取请求指定的值，未指定时取客户端配置的默认值，从调用时开始计算，获取连接的时间也计入其中。
+     * 超时后Future以{@link RpcError#REQUEST_TIMEOUT}失败，由共享的时间轮触发，不占用等待线程。
+     * </p>
+     *
+     * 找不到服务等在发送之前就发生的错误同样通过Future返回，不会直接抛出。
      * </p>
      *
      * @param rpcRequest RPC请求对象，包含调用的服务接口名和请求数据
-     * @return 返回RPC响应的数据部分，若连接失败或异常发生则可能返回null
+     * @return 完成值为响应数据的Future，调用失败时以异常完成
      */
     @Override
-    public Object sendRequest(RpcRequest rpcRequest) {
+    public CompletableFuture<Object> sendRequestAsync(RpcRequest rpcRequest) {
+        try {
+            return invokeAsync(rpcRequest);
+        } catch (RuntimeException e) {
+            CompletableFuture<Object> failedFuture = new CompletableFuture<>();
+            failedFuture.completeExceptionally(e);
+            return failedFuture;
+        }
+    }
+
+    /**
+     * 查找服务地址、取得连接并发送请求，发送之前的错误直接抛出，由{@link #sendRequestAsync(RpcRequest)}转为失败的Future
+     */
+    private CompletableFuture<Object> invokeAsync(RpcRequest rpcRequest) {
         // 检查序列化器是否已设置，未设置则抛出异常
         if(serializer == null) {
             log.error("未设置序列化器");
             throw new RpcException(RpcError.SERIALIZER_NOT_FOUND);
         }
 
-        // 用于存储RPC调用结果的原子引用
-        AtomicReference<Object> result = new AtomicReference<>(null);
-
-        try{
-            // 通过服务发现获取服务地址，并尝试连接到服务端
-            InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest.getInterfaceName());
-            Channel channel = ChannelProvider.get(inetSocketAddress, serializer);
-
-            // 如果连接不可用，则关闭连接并返回null
-            if (!channel.isActive()) {
-                group.shutdownGracefully();
-                return null;
-            }
+        // 通过服务发现按负载均衡策略获取服务地址，从连接池中取得到服务端的长连接后发送请求
+        InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest.getInterfaceName(), rpcRequest);
+        if (inetSocketAddress == null) {
+            throw new RpcException(RpcError.SERVICE_NOT_FOUND, rpcRequest.getInterfaceName());
+        }
+        long timeoutMillis = rpcRequest.getTimeoutMillis() > 0 ? rpcRequest.getTimeoutMillis() : requestTimeoutMillis;
+        long deadlineNanos = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+        RequestTimer requestTimer = runtime.getRequestTimer();
+        ChannelProvider channelProvider = runtime.getChannelProvider();
+        // 统计该地址上进行中的调用数，供最少活跃调用策略使用
+        ActiveCounter.begin(inetSocketAddress);
+        CompletableFuture<Object> resultFuture;
+        try {
+            resultFuture = sendAsync(channelProvider, requestTimer, inetSocketAddress, rpcRequest, deadlineNanos);
+        } catch (RuntimeException e) {
+            ActiveCounter.end(inetSocketAddress);
+            throw e;
+        }
+        resultFuture.whenComplete((result, e) -> ActiveCounter.end(inetSocketAddress));
+        return resultFuture;
+    }
 
-            // 将RPC请求写入并刷新到通道，同时监听操作结果
-            channel.writeAndFlush(rpcRequest).addListener(future1 -> {
-                if(future1.isSuccess()){
-                    log.info((String.format("客户端发送消息：%s",rpcRequest.toString())));
-                }else{
-                    log.error("发送消息有错误发生：",future1.cause());
+    /**
+     * 取得到服务端的连接，连接建立后发送请求；等待连接的时间同样受截止时间约束
+     *
+     * @param deadlineNanos 截止时间，0表示不限制
+     * @return 完成值为响应数据的Future
+     */
+    private CompletableFuture<Object> sendAsync(ChannelProvider channelProvider, RequestTimer requestTimer,
+                                                InetSocketAddress inetSocketAddress, RpcRequest rpcRequest,
+                                                long deadlineNanos) {
+        CompletableFuture<Channel> channelFuture = channelProvider.getAsync(inetSocketAddress, serializer);
+        if (deadlineNanos != 0 && !channelFuture.isDone()) {
+            // 连接仍在建立中，等待连接的时间同样受截止时间约束；超时后连接继续在后台建立，供后续请求使用
+            CompletableFuture<Channel> boundedFuture = new CompletableFuture<>();
+            channelFuture.whenComplete((channel, e) -> {
+                if (e != null) {
+                    boundedFuture.completeExceptionally(e);
+                } else {
+                    boundedFuture.complete(channel);
                 }
             });
+            requestTimer.schedule(boundedFuture, deadlineNanos, () -> boundedFuture.completeExceptionally(
+                    new RpcException(RpcError.REQUEST_TIMEOUT, rpcRequest.getInterfaceName() + "#" + rpcRequest.getMethodName())));
+            channelFuture = boundedFuture;
+        }
+        return channelFuture.thenCompose(channel -> send(channel, rpcRequest, deadlineNanos));
+    }
 
-            // 等待通道关闭，确保请求被发送
-            channel.closeFuture().sync();
+    /**
+     * 在指定连接上发送请求。
+     *
+     * @param channel 已建立的连接
+     * @param rpcRequest RPC请求对象
+     * @param deadlineNanos 截止时间，0表示不限制
+     * @return 完成值为响应数据的Future
+     */
+    private CompletableFuture<Object> send(Channel channel, RpcRequest rpcRequest, long deadlineNanos) {
+        // 由连接的处理器分配请求号、登记并写出请求
+        CompletableFuture<RpcResponse> resultFuture = channel.pipeline().get(NettyClientHandler.class)
+                .send(rpcRequest, deadlineNanos);
 
-            // 从通道的属性中获取RPC响应，进行响应检查，并存储结果
-            AttributeKey<RpcResponse> key = AttributeKey.valueOf("rpcResponse" + rpcRequest.getRequestId());
-            RpcResponse rpcResponse = channel.attr(key).get();
+        // 响应到达后进行检查，并取出数据部分
+        return resultFuture.thenApply(rpcResponse -> {
             RpcMessageChecker.check(rpcRequest, rpcResponse);
-            result.set(rpcResponse.getData());
-
-        }catch (InterruptedException e){
-            // 记录中断异常日志，并重新设置中断状态
-            log.error("发送消息时有错误发生：",e);
-            Thread.currentThread().interrupt();
-        }
-
-        // 返回RPC调用结果
-        return result.get();
+            return rpcResponse.getData();
+        });
     }
 
 }
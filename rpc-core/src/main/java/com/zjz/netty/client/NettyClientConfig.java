@@ -0,0 +1,140 @@
+package com.zjz.netty.client;
+
+import com.zjz.RpcClient;
+import com.zjz.entity.RpcRequest;
+import com.zjz.codec.Protocol;
+import com.zjz.compress.Compressor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Netty客户端的可调参数，通过builder构建，未设置的参数使用默认值。
+ * 参数相同的配置相等，{@link NettyClientRuntime#acquireShared}据此共用运行时。
+ */
+@Getter
+@Builder
+@EqualsAndHashCode
+public class NettyClientConfig {
+
+    /**
+     * 每个服务端地址（及序列化器）维持的连接数
+     */
+    @Builder.Default
+    private int connectionsPerEndpoint = 1;
+
+    /**
+     * 建立连接的超时时间，单位毫秒
+     */
+    @Builder.Default
+    private int connectTimeoutMillis = 5000;
+
+    /**
+     * 请求的默认超时时间，单位毫秒，请求通过{@link RpcRequest#getTimeoutMillis()}或
+     * {@link com.zjz.annotation.Timeout}指定时以指定的为准；为0时不限制
+     */
+    @Builder.Default
+    private long requestTimeoutMillis = RpcClient.DEFAULT_TIMEOUT_MILLIS;
+
+    /**
+     * 心跳间隔，单位毫秒。连接在该时间内没有任何读写时发送一次心跳，
+     * 连续{@link #heartbeatMissLimit}个间隔收不到任何数据时认为连接已经失效，关闭并重新建立连接；为0时不发送心跳
+     */
+    @Builder.Default
+    private long heartbeatIntervalMillis = 30000;
+
+    /**
+     * 允许连续收不到数据的心跳间隔数
+     */
+    @Builder.Default
+    private int heartbeatMissLimit = 3;
+
+    /**
+     * 批量发送的时间窗口，单位微秒。大于0时开启批量发送：窗口内的请求合并为一个批量帧写出，
+     * 适合大量小请求的场景；为0时每个请求单独写出
+     */
+    @Builder.Default
+    private long batchWindowMicros = 0;
+
+    /**
+     * 批量发送时一批的最大请求数，攒够后不等窗口结束立即写出
+     */
+    @Builder.Default
+    private int batchMaxMessages = 64;
+
+    /**
+     * 是否优先使用原生epoll传输，不可用时自动退化为NIO
+     */
+    @Builder.Default
+    private boolean nativeTransport = true;
+
+    /**
+     * IO线程数，为0时使用Netty的默认值（CPU核数的2倍）。
+     * 事件循环组由{@link NettyClientRuntime}持有，共用同一运行时的客户端共用这些线程
+     */
+    @Builder.Default
+    private int ioThreads = 0;
+
+    /**
+     * 连接的接收缓冲区大小（SO_RCVBUF），单位字节，为0时使用系统默认值
+     */
+    @Builder.Default
+    private int receiveBufferSize = 0;
+
+    /**
+     * 连接的发送缓冲区大小（SO_SNDBUF），单位字节，为0时使用系统默认值
+     */
+    @Builder.Default
+    private int sendBufferSize = 0;
+
+    /**
+     * 写缓冲区的低水位线，单位字节
+     */
+    @Builder.Default
+    private int writeBufferLowWaterMark = 32 * 1024;
+
+    /**
+     * 写缓冲区的高水位线，单位字节
+     */
+    @Builder.Default
+    private int writeBufferHighWaterMark = 64 * 1024;
+
+    /**
+     * 是否使用池化的ByteBuf分配器（优先分配堆外内存），关闭时使用非池化分配器
+     */
+    @Builder.Default
+    private boolean pooledAllocator = true;
+
+    /**
+     * 消息体的压缩算法编号，见{@link Compressor}，默认不压缩。对端需要使用支持压缩的版本
+     */
+    @Builder.Default
+    private int compressor = Compressor.NO_COMPRESSOR;
+
+    /**
+     * 压缩阈值，单位字节，消息体达到该大小时才压缩，较小的消息压缩的收益不足以抵消CPU开销
+     */
+    @Builder.Default
+    private int compressThreshold = Compressor.DEFAULT_THRESHOLD;
+
+    /**
+     * 发送请求使用的协议版本，见{@link Protocol}，默认从v1开始，开启版本协商时确认服务端支持v2后改用帧头更短、可以携带附加信息的v2。
+     * 服务端按请求的版本回复；确定所有服务端都支持v2时可以直接设为{@link Protocol#VERSION_2}，省去协商
+     */
+    @Builder.Default
+    private int protocolVersion = Protocol.VERSION_1;
+
+    /**
+     * 协议版本为v1时是否与服务端协商版本：每条连接建立后发送版本探测，
+     * 收到v2的回复后改用v2，只支持v1的旧版本服务端继续使用v1
+     */
+    @Builder.Default
+    private boolean negotiateVersion = true;
+
+    /**
+     * 使用全部默认值的配置
+     */
+    public static NettyClientConfig defaultConfig() {
+        return NettyClientConfig.builder().build();
+    }
+}
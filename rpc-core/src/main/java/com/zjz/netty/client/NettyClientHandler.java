@@ -1,28 +1,139 @@
 package com.zjz.netty.client;
 
+import com.zjz.entity.RpcRequest;
 import com.zjz.entity.RpcResponse;
+import com.zjz.enums.RpcError;
+import com.zjz.exception.RpcException;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoop;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.util.AttributeKey;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端请求/响应处理器，每条连接一个实例。
+ * 连接保持打开，发送请求时在连接的EventLoop中分配请求号并登记，收到响应后唤醒对应请求号的调用方。
+ */
 @Slf4j
 public class NettyClientHandler extends SimpleChannelInboundHandler<RpcResponse> {
 
+    private final UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+    private final RequestTimer requestTimer;
+    private volatile Channel channel;
+
+    /**
+     * @param requestTimer 所属运行时的请求超时定时器
+     */
+    NettyClientHandler(RequestTimer requestTimer) {
+        this.requestTimer = requestTimer;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.channel = ctx.channel();
+    }
+
+    /**
+     * 在本连接上发送请求，可以在任意线程调用。
+     * 请求号的分配、登记和写出都在连接的EventLoop中完成，与写出本身共用一次线程切换。
+     * 指定了截止时间时，请求中携带剩余的超时时间供服务端判断，到期未收到响应则移除登记并以超时失败。
+     *
+     * @param rpcRequest RPC请求对象，发送时会被设置请求号
+     * @param deadlineNanos 截止时间，以{@link System#nanoTime()}为基准，0表示不限制
+     * @return 收到响应时完成的Future
+     */
+    public CompletableFuture<RpcResponse> send(RpcRequest rpcRequest, long deadlineNanos) {
+        CompletableFuture<RpcResponse> resultFuture = new CompletableFuture<>();
+        EventLoop eventLoop = channel.eventLoop();
+        if (deadlineNanos != 0) {
+            long remainingNanos = deadlineNanos - System.nanoTime();
+            if (remainingNanos <= 0) {
+                // 获取连接时已经超时，不再发送
+                resultFuture.completeExceptionally(timeoutException(rpcRequest));
+                return resultFuture;
+            }
+            // 向上取整，避免不足1毫秒的剩余时间被当作不限制
+            rpcRequest.setTimeoutMillis(TimeUnit.NANOSECONDS.toMillis(remainingNanos + 999_999));
+            requestTimer.schedule(resultFuture, deadlineNanos, () -> expire(eventLoop, rpcRequest, resultFuture));
+        }
+        if (eventLoop.inEventLoop()) {
+            doSend(rpcRequest, resultFuture);
+        } else {
+            try {
+                eventLoop.execute(() -> doSend(rpcRequest, resultFuture));
+            } catch (RejectedExecutionException e) {
+                resultFuture.completeExceptionally(new RpcException(RpcError.CLIENT_CONNECT_SERVER_FAILURE));
+            }
+        }
+        return resultFuture;
+    }
+
+    private void doSend(RpcRequest rpcRequest, CompletableFuture<RpcResponse> resultFuture) {
+        if (resultFuture.isDone()) {
+            // 排队等待发送期间已经超时
+            return;
+        }
+        if (!channel.isActive()) {
+            resultFuture.completeExceptionally(new RpcException(RpcError.CLIENT_CONNECT_SERVER_FAILURE, "连接已关闭:" + channel.remoteAddress()));
+            return;
+        }
+        // 先登记等待响应的Future，再发送请求
+        long requestId = unprocessedRequests.put(resultFuture);
+        rpcRequest.setRequestId(requestId);
+        channel.writeAndFlush(rpcRequest).addListener((ChannelFutureListener) future -> {
+            if (future.isSuccess()) {
+                log.info(String.format("客户端发送消息：%s", rpcRequest.toString()));
+            } else {
+                unprocessedRequests.remove(requestId);
+                resultFuture.completeExceptionally(future.cause());
+                log.error("发送消息有错误发生：", future.cause());
+            }
+        });
+    }
+
+    /**
+     * 请求超时：在EventLoop中移除登记，避免服务端一直不响应时等待表无限增长。
+     */
+    private void expire(EventLoop eventLoop, RpcRequest rpcRequest, CompletableFuture<RpcResponse> resultFuture) {
+        RpcException timeout = timeoutException(rpcRequest);
+        try {
+            eventLoop.execute(() -> {
+                // 请求号在发送时分配，尚未发送时为0，不会匹配到任何登记
+                unprocessedRequests.remove(rpcRequest.getRequestId());
+                resultFuture.completeExceptionally(timeout);
+            });
+        } catch (RejectedExecutionException e) {
+            resultFuture.completeExceptionally(timeout);
+        }
+    }
+
+    private static RpcException timeoutException(RpcRequest rpcRequest) {
+        return new RpcException(RpcError.REQUEST_TIMEOUT, rpcRequest.getInterfaceName() + "#" + rpcRequest.getMethodName());
+    }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RpcResponse msg) throws Exception {
         try {
             log.info(String.format("客户端接收到消息: %s", msg));
-            AttributeKey<RpcResponse> key = AttributeKey.valueOf("rpcResponse"+ msg.getRequestId());
-            ctx.channel().attr(key).set(msg);
-            ctx.channel().close();
+            unprocessedRequests.complete(msg);
         } finally {
             ReferenceCountUtil.release(msg);
         }
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // 连接断开，未收到响应的请求全部失败
+        unprocessedRequests.failAll(new RpcException(RpcError.CLIENT_CONNECT_SERVER_FAILURE, "连接已关闭:" + ctx.channel().remoteAddress()));
+        super.channelInactive(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         log.error("过程调用时有错误发生:");
@@ -0,0 +1,194 @@
+package com.zjz.netty.client;
+
+import com.zjz.enums.RpcError;
+import com.zjz.exception.RpcException;
+import com.zjz.netty.NettyTransport;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Netty客户端的运行时，持有客户端用到的全部资源：IO事件循环组、Bootstrap、连接池和请求超时定时器。
+ * <p>
+ * 一个运行时可以被多个{@link NettyClient}共用，进程中有很多服务代理时线程和连接不会随客户端数量成倍增加。
+ * 运行时需要显式{@link #start()}和{@link #close()}；关闭后共用它的客户端都不能再发送请求。
+ * 不指定运行时的客户端使用{@link #getDefault()}返回的默认运行时；
+ * 只指定配置的客户端通过{@link #acquireShared}按配置共用运行时，最后一个使用者归还后运行时关闭。
+ * </p>
+ */
+@Slf4j
+public class NettyClientRuntime implements AutoCloseable {
+
+    private static final String IO_THREAD_NAME_PREFIX = "netty-client-io";
+
+    private static volatile NettyClientRuntime defaultRuntime;
+    // 按配置共用的运行时，只在持有类锁时访问
+    private static final Map<NettyClientConfig, NettyClientRuntime> SHARED = new HashMap<>();
+
+    @Getter
+    private final NettyClientConfig config;
+    private EventLoopGroup eventLoopGroup;
+    private RequestTimer requestTimer;
+    private ChannelProvider channelProvider;
+    private volatile boolean started;
+    private volatile boolean closed;
+    // 通过acquireShared取得本运行时且尚未归还的次数，只在持有类锁时访问
+    private int sharedRefs;
+
+    public NettyClientRuntime() {
+        this(NettyClientConfig.defaultConfig());
+    }
+
+    /**
+     * @param config 客户端配置，运行时启动后修改不再生效
+     */
+    public NettyClientRuntime(NettyClientConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 获取使用默认配置的共享运行时，首次调用时创建并启动，随进程退出
+     */
+    public static NettyClientRuntime getDefault() {
+        if (defaultRuntime == null) {
+            synchronized (NettyClientRuntime.class) {
+                if (defaultRuntime == null) {
+                    defaultRuntime = new NettyClientRuntime().start();
+                }
+            }
+        }
+        return defaultRuntime;
+    }
+
+    /**
+     * 取得按配置共用的运行时，相同配置的调用方得到同一个已启动的运行时，用完后必须调用{@link #releaseShared()}归还。
+     *
+     * @param config 客户端配置
+     * @return 已启动的运行时
+     */
+    public static synchronized NettyClientRuntime acquireShared(NettyClientConfig config) {
+        NettyClientRuntime runtime = SHARED.get(config);
+        // 共用的运行时被显式关闭后重新创建
+        if (runtime == null || runtime.closed) {
+            runtime = new NettyClientRuntime(config).start();
+            SHARED.put(config, runtime);
+        }
+        runtime.sharedRefs++;
+        return runtime;
+    }
+
+    /**
+     * 归还通过{@link #acquireShared}取得的运行时，最后一个使用者归还时关闭运行时
+     */
+    public void releaseShared() {
+        synchronized (NettyClientRuntime.class) {
+            if (sharedRefs == 0 || --sharedRefs > 0) {
+                return;
+            }
+            if (SHARED.get(config) == this) {
+                SHARED.remove(config);
+            }
+        }
+        close();
+    }
+
+    /**
+     * 启动运行时，创建事件循环组、定时器和连接池。重复调用时直接返回。
+     *
+     * @return 当前运行时
+     * @throws RpcException 运行时已经关闭时抛出
+     */
+    public synchronized NettyClientRuntime start() {
+        if (closed) {
+            throw new RpcException(RpcError.CLIENT_CLOSED);
+        }
+        if (started) {
+            return this;
+        }
+        // 按配置选择epoll或NIO
+        NettyTransport transport = NettyTransport.select(config.isNativeTransport());
+        eventLoopGroup = transport.newEventLoopGroup(config.getIoThreads(), IO_THREAD_NAME_PREFIX);
+        requestTimer = new RequestTimer();
+        channelProvider = new ChannelProvider(config, initializeBootstrap(transport), requestTimer);
+        started = true;
+        log.info("Netty客户端运行时已启动，传输方式: {}", transport);
+        return this;
+    }
+
+    /**
+     * 关闭运行时：关闭所有连接，停止定时器并释放IO线程。重复调用时直接返回。
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!started) {
+            return;
+        }
+        if (this == defaultRuntime) {
+            defaultRuntime = null;
+        }
+        channelProvider.close();
+        requestTimer.stop();
+        eventLoopGroup.shutdownGracefully();
+        log.info("Netty客户端运行时已关闭");
+    }
+
+    /**
+     * 运行时是否已启动且未关闭
+     */
+    public boolean isRunning() {
+        return started && !closed;
+    }
+
+    ChannelProvider getChannelProvider() {
+        checkRunning();
+        return channelProvider;
+    }
+
+    RequestTimer getRequestTimer() {
+        checkRunning();
+        return requestTimer;
+    }
+
+    private void checkRunning() {
+        if (!isRunning()) {
+            throw new RpcException(RpcError.CLIENT_CLOSED);
+        }
+    }
+
+    /**
+     * 初始化Netty的启动对象，各序列化器的连接在此基础上安装各自的ChannelInitializer。
+     *
+     * @return 返回配置好的Bootstrap实例。
+     */
+    private Bootstrap initializeBootstrap(NettyTransport transport) {
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(eventLoopGroup) // 设置事件循环组
+                .channel(transport.socketChannelClass()) // 设置使用的通道类
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutMillis()) // 设置连接超时时间
+                .option(ChannelOption.SO_KEEPALIVE, true) // 开启TCP心跳机制
+                .option(ChannelOption.TCP_NODELAY, true) // 禁用Nagle算法
+                .option(ChannelOption.ALLOCATOR, config.isPooledAllocator()
+                        ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT)
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        config.getWriteBufferLowWaterMark(), config.getWriteBufferHighWaterMark()));
+        if (config.getReceiveBufferSize() > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, config.getReceiveBufferSize());
+        }
+        if (config.getSendBufferSize() > 0) {
+            bootstrap.option(ChannelOption.SO_SNDBUF, config.getSendBufferSize());
+        }
+        return bootstrap;
+    }
+}
@@ -0,0 +1,43 @@
+package com.zjz.netty.client;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端请求的超时定时器，由{@link NettyClientRuntime}持有，使用同一运行时的所有请求共用。
+ * 时间轮的登记和取消都是O(1)的，不为每个调用占用等待线程；
+ * 超时精度为一个tick，对RPC超时来说足够。
+ */
+final class RequestTimer {
+
+    // 时间轮的tick间隔，单位毫秒
+    private static final long TICK_MILLIS = 10;
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(
+            new DefaultThreadFactory("rpc-request-timer", true), TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+    /**
+     * 在截止时间到达时执行超时动作，Future先完成时取消定时任务。
+     * 超时动作在定时器线程上执行，不应做阻塞操作。
+     *
+     * @param future 受截止时间约束的Future
+     * @param deadlineNanos 截止时间，以{@link System#nanoTime()}为基准
+     * @param onTimeout 超时动作
+     */
+    void schedule(CompletableFuture<?> future, long deadlineNanos, Runnable onTimeout) {
+        long delayNanos = Math.max(0, deadlineNanos - System.nanoTime());
+        Timeout timeout = timer.newTimeout(t -> onTimeout.run(), delayNanos, TimeUnit.NANOSECONDS);
+        future.whenComplete((result, e) -> timeout.cancel());
+    }
+
+    /**
+     * 停止定时器，尚未到期的超时动作不再执行
+     */
+    void stop() {
+        timer.stop();
+    }
+}
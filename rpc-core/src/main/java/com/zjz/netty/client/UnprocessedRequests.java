@@ -0,0 +1,74 @@
+package com.zjz.netty.client;
+
+import com.zjz.entity.RpcResponse;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 单条连接上尚未收到响应的请求表。
+ * 多个调用可以同时复用同一条长连接，请求号由本表按连接递增分配，响应到达后根据请求号找到对应的Future并唤醒调用方。
+ * 该表只在连接所属的EventLoop线程中访问，因此使用以long为键的非同步Map，无需加锁也不产生装箱。
+ */
+@Slf4j
+public class UnprocessedRequests {
+
+    // 请求号 -> 等待响应的Future
+    private final LongObjectMap<CompletableFuture<RpcResponse>> unprocessedResponseFutures = new LongObjectHashMap<>();
+    // 下一个请求号，本连接内单调递增
+    private long nextRequestId = 1;
+
+    /**
+     * 为等待响应的请求分配请求号并登记。
+     *
+     * @param future 响应到达时需要完成的Future
+     * @return 分配的请求号
+     */
+    public long put(CompletableFuture<RpcResponse> future) {
+        long requestId = nextRequestId++;
+        unprocessedResponseFutures.put(requestId, future);
+        return requestId;
+    }
+
+    /**
+     * 移除一个等待中的请求，一般在请求发送失败或调用方放弃等待时调用。
+     *
+     * @param requestId 请求号
+     * @return 被移除的Future，请求已经完成或不存在时返回null
+     */
+    public CompletableFuture<RpcResponse> remove(long requestId) {
+        return unprocessedResponseFutures.remove(requestId);
+    }
+
+    /**
+     * 根据响应中的请求号完成对应的Future。
+     *
+     * @param rpcResponse 服务端返回的响应
+     */
+    public void complete(RpcResponse rpcResponse) {
+        CompletableFuture<RpcResponse> future = unprocessedResponseFutures.remove(rpcResponse.getRequestId());
+        if (future != null) {
+            future.complete(rpcResponse);
+        } else {
+            log.warn("未找到与响应匹配的请求: {}", rpcResponse.getRequestId());
+        }
+    }
+
+    /**
+     * 连接断开时让所有未完成的请求以异常结束，避免调用方永久等待。
+     *
+     * @param cause 失败原因
+     */
+    public void failAll(Throwable cause) {
+        // 先复制并清空，避免Future回调中再次访问本表
+        List<CompletableFuture<RpcResponse>> futures = new ArrayList<>(unprocessedResponseFutures.values());
+        unprocessedResponseFutures.clear();
+        for (CompletableFuture<RpcResponse> future : futures) {
+            future.completeExceptionally(cause);
+        }
+    }
+}
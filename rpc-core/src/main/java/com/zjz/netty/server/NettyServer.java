@@ -1,29 +1,41 @@
 package com.zjz.netty.server;
 
 import com.zjz.RpcServer;
+import com.zjz.codec.BatchingHandler;
 import com.zjz.codec.CommonDecoder;
 import com.zjz.codec.CommonEncoder;
+import com.zjz.codec.HeartbeatHandler;
 import com.zjz.enums.RpcError;
 import com.zjz.exception.RpcException;
 import com.zjz.hook.ShutdownHook;
+import com.zjz.limiter.ConcurrencyLimiterRegistry;
+import com.zjz.netty.NettyTransport;
 import com.zjz.provider.ServiceProviderImpl;
 import com.zjz.registry.NacosServiceRegistry;
 import com.zjz.provider.ServiceProvider;
 import com.zjz.registry.ServiceRegistry;
 import com.zjz.serializer.CommonSerializer;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.handler.timeout.IdleStateHandler;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Netty实现的RPC服务器类。
@@ -32,12 +44,18 @@ import java.net.InetSocketAddress;
 public class NettyServer implements RpcServer {
 
 
+    // 客户端批量发送请求时，响应同样按批量返回的时间窗口（微秒）和每批最大条数
+    private static final long BATCH_WINDOW_MICROS = 50;
+    private static final int BATCH_MAX_MESSAGES = 64;
+
     private final ServiceRegistry serviceRegistry;
     private final ServiceProvider serviceProvider;
 
     private final String host;
     private final int port;
     private final CommonSerializer serializer;
+    private final NettyServerConfig config;
+    private final ConcurrencyLimiterRegistry concurrencyLimiters;
     /**
      * 构造函数，指定服务器监听的主机和端口。
      *
@@ -48,9 +66,25 @@ public class NettyServer implements RpcServer {
        this(host, port, DEFAULT_SERIALIZER);
     }
     public NettyServer(String host, int port, Integer serializer) {
+        this(host, port, serializer, new NacosServiceRegistry());
+    }
+    /**
+     * @param serviceRegistry 服务注册中心，例如不依赖Nacos的{@link com.zjz.registry.LocalServiceRegistry}
+     */
+    public NettyServer(String host, int port, Integer serializer, ServiceRegistry serviceRegistry) {
+        this(host, port, serializer, serviceRegistry, NettyServerConfig.defaultConfig());
+    }
+    /**
+     * @param config 服务端配置，包括请求的执行方式和业务线程池大小
+     */
+    public NettyServer(String host, int port, Integer serializer, ServiceRegistry serviceRegistry, NettyServerConfig config) {
+        this.config = config;
+        // 并发限制器按方法在所有连接间共享
+        this.concurrencyLimiters = config.getConcurrencyLimiterFactory() == null
+                ? null : new ConcurrencyLimiterRegistry(config.getConcurrencyLimiterFactory());
         this.host = host;
         this.port = port;
-        serviceRegistry = new NacosServiceRegistry();
+        this.serviceRegistry = serviceRegistry;
         serviceProvider = new ServiceProviderImpl();
         this.serializer = CommonSerializer.getByCode(serializer);
     }
@@ -63,34 +97,70 @@ public class NettyServer implements RpcServer {
     @Override
     public void start() {
         ShutdownHook.getShutdownHook().addClearAllHook();
-        // 创建NIO事件循环组，用于处理连接接受和IO操作
-        NioEventLoopGroup bossGroup = new NioEventLoopGroup();
-        NioEventLoopGroup workerGroup = new NioEventLoopGroup();
+        // 按配置选择epoll或NIO，创建用于接收连接和处理IO的事件循环组
+        NettyTransport transport = NettyTransport.select(config.isNativeTransport());
+        EventLoopGroup bossGroup = transport.newEventLoopGroup(config.getBossThreads(), "netty-server-boss");
+        EventLoopGroup workerGroup = transport.newEventLoopGroup(config.getWorkerThreads(), "netty-server-worker");
+        ByteBufAllocator allocator = config.isPooledAllocator() ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
         try{
             // 配置服务器引导程序
             ServerBootstrap serverBootstrap = new ServerBootstrap();
             serverBootstrap.group(bossGroup,workerGroup)
-                    .channel(NioServerSocketChannel.class) // 指定使用的NIO通道类
+                    .channel(transport.serverSocketChannelClass()) // 指定使用的通道类
                     .handler(new LoggingHandler(LogLevel.INFO)) // 添加日志处理器，记录服务器操作日志
-                    .option(ChannelOption.SO_BACKLOG,256) // 设置连接队列大小，控制同时等待连接的最大数量
+                    .option(ChannelOption.SO_BACKLOG, config.getSoBacklog()) // 设置连接队列大小，控制同时等待连接的最大数量
                     .option(ChannelOption.SO_KEEPALIVE,true) // 启用TCP KeepAlive，检查连接是否有效
+                    .option(ChannelOption.ALLOCATOR, allocator)
                     .childOption(ChannelOption.TCP_NODELAY, true) // 启用TCP NoDelay，减少数据包延迟
+                    .childOption(ChannelOption.ALLOCATOR, allocator)
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                            config.getWriteBufferLowWaterMark(), config.getWriteBufferHighWaterMark()))
                     // 配置新建立连接的处理器，初始化每个连接的ChannelPipeline
                     .childHandler(new ChannelInitializer<SocketChannel>(){
                         @Override
                         protected void initChannel(SocketChannel socketChannel) throws Exception {
                             ChannelPipeline pipeline = socketChannel.pipeline();
                             // 添加编解码器和自定义处理器到通道管道，处理数据的编码、解码和业务逻辑
-                            pipeline.addLast(new CommonEncoder(serializer));
+                            pipeline.addLast(new CommonEncoder(serializer, config.getCompressor(), config.getCompressThreshold(),
+                                    CommonEncoder.FOLLOW_PEER));
                             pipeline.addLast(new CommonDecoder());
-                            pipeline.addLast(new NettyServerHandler());
+                            if (config.getIdleTimeoutMillis() > 0) {
+                                // 回收长时间没有数据的连接，避免客户端异常退出后连接和文件描述符一直占用
+                                pipeline.addLast(new IdleStateHandler(config.getIdleTimeoutMillis(), 0, 0, TimeUnit.MILLISECONDS));
+                            }
+                            pipeline.addLast(new HeartbeatHandler());
+                            // 只在客户端发送过批量帧后才批量返回响应
+                            pipeline.addLast(new BatchingHandler(BATCH_WINDOW_MICROS, BATCH_MAX_MESSAGES, true));
+                            pipeline.addLast(new NettyServerHandler(config, concurrencyLimiters));
                         }
                     });
+            if (config.getReceiveBufferSize() > 0) {
+                serverBootstrap.childOption(ChannelOption.SO_RCVBUF, config.getReceiveBufferSize());
+            }
+            if (config.getSendBufferSize() > 0) {
+                serverBootstrap.childOption(ChannelOption.SO_SNDBUF, config.getSendBufferSize());
+            }
+            // 开启SO_REUSEPORT时每个接收线程各绑定一个监听套接字
+            int acceptors = 1;
+            if (config.isReusePort()) {
+                if (transport == NettyTransport.EPOLL) {
+                    serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+                    acceptors = Math.max(1, config.getBossThreads());
+                } else {
+                    log.warn("当前传输方式不支持SO_REUSEPORT，只绑定一个监听套接字");
+                }
+            }
             // 绑定端口并启动服务器，同步等待端口绑定成功
-            ChannelFuture future = serverBootstrap.bind(host, port).sync();
+            List<Channel> serverChannels = new ArrayList<>(acceptors);
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(serverBootstrap.bind(host, port).sync().channel());
+            }
+            log.info("服务器已启动，传输方式: {}，监听套接字数: {}", transport, acceptors);
 
             // 等待服务器关闭，确保所有连接都关闭
-            future.channel().closeFuture().sync();
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.closeFuture().sync();
+            }
         }catch (InterruptedException e){
           // 记录服务启动异常，如果线程被中断
           log.error("服务启动失败",e);
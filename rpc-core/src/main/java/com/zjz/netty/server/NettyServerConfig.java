@@ -0,0 +1,141 @@
+package com.zjz.netty.server;
+
+import com.zjz.enums.DispatchMode;
+import com.zjz.limiter.ConcurrencyLimiter;
+import com.zjz.compress.Compressor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.function.Function;
+
+/**
+ * Netty服务端的可调参数，通过builder构建，未设置的参数使用默认值。
+ */
+@Getter
+@Builder
+public class NettyServerConfig {
+
+    /**
+     * 默认的请求执行方式，服务可以通过{@link com.zjz.annotation.Dispatch}单独指定
+     */
+    @Builder.Default
+    private DispatchMode dispatchMode = DispatchMode.POOL;
+
+    /**
+     * 业务线程池的核心线程数
+     */
+    @Builder.Default
+    private int businessCorePoolSize = 10;
+
+    /**
+     * 业务线程池的最大线程数
+     */
+    @Builder.Default
+    private int businessMaxPoolSize = 100;
+
+    /**
+     * 业务线程池的队列容量，队列满且线程数达到最大值时请求被拒绝并返回服务端繁忙
+     */
+    @Builder.Default
+    private int businessQueueCapacity = 1000;
+
+    /**
+     * 并发限制器工厂，参数为“服务名#方法名”，每个方法首次被调用时创建一个限制器，返回null表示该方法不限制。
+     * 为null时不做并发限制。例如：{@code key -> AimdConcurrencyLimiter.builder().maxLimit(200).build()}
+     */
+    private Function<String, ConcurrencyLimiter> concurrencyLimiterFactory;
+
+    /**
+     * 是否合并写出响应，开启时同一时刻就绪的多个响应只flush一次，关闭时每个响应单独writeAndFlush，见{@link ResponseWriter}
+     */
+    @Builder.Default
+    private boolean coalesceResponses = true;
+
+    /**
+     * 连接的空闲超时时间，单位毫秒，超过该时间没有收到客户端的任何数据（包括心跳）时关闭连接，为0时不检测。
+     * 应大于客户端的心跳间隔
+     */
+    @Builder.Default
+    private long idleTimeoutMillis = 90000;
+
+    /**
+     * 是否优先使用原生epoll传输，不可用时自动退化为NIO
+     */
+    @Builder.Default
+    private boolean nativeTransport = true;
+
+    /**
+     * 接收连接的线程数。开启{@link #reusePort}时同时是监听同一端口的套接字数
+     */
+    @Builder.Default
+    private int bossThreads = 1;
+
+    /**
+     * 处理连接读写的IO线程数，为0时使用Netty的默认值（CPU核数的2倍）
+     */
+    @Builder.Default
+    private int workerThreads = 0;
+
+    /**
+     * 等待被接收的连接队列大小
+     */
+    @Builder.Default
+    private int soBacklog = 256;
+
+    /**
+     * 连接的接收缓冲区大小（SO_RCVBUF），单位字节，为0时使用系统默认值
+     */
+    @Builder.Default
+    private int receiveBufferSize = 0;
+
+    /**
+     * 连接的发送缓冲区大小（SO_SNDBUF），单位字节，为0时使用系统默认值
+     */
+    @Builder.Default
+    private int sendBufferSize = 0;
+
+    /**
+     * 写缓冲区的低水位线，单位字节，待写出的数据降到该值以下时连接重新变为可写
+     */
+    @Builder.Default
+    private int writeBufferLowWaterMark = 32 * 1024;
+
+    /**
+     * 写缓冲区的高水位线，单位字节，待写出的数据超过该值时连接变为不可写
+     */
+    @Builder.Default
+    private int writeBufferHighWaterMark = 64 * 1024;
+
+    /**
+     * 是否开启SO_REUSEPORT，开启后按{@link #bossThreads}绑定多个监听同一端口的套接字，
+     * 由内核在它们之间分配新连接，多核机器上接收连接不再集中在一个线程。仅epoll传输支持
+     */
+    @Builder.Default
+    private boolean reusePort = false;
+
+    /**
+     * 是否使用池化的ByteBuf分配器（优先分配堆外内存），关闭时使用非池化分配器
+     */
+    @Builder.Default
+    private boolean pooledAllocator = true;
+
+    /**
+     * 响应的压缩算法编号，见{@link Compressor}。默认为{@link Compressor#FOLLOW_PEER}，使用客户端最近一次压缩请求所用的算法，
+     * 客户端没有发送过压缩的请求时不压缩；指定具体的算法时所有响应都按该算法压缩，只应在确认所有客户端都支持时使用
+     */
+    @Builder.Default
+    private int compressor = Compressor.FOLLOW_PEER;
+
+    /**
+     * 压缩阈值，单位字节，消息体达到该大小时才压缩，较小的消息压缩的收益不足以抵消CPU开销
+     */
+    @Builder.Default
+    private int compressThreshold = Compressor.DEFAULT_THRESHOLD;
+
+    /**
+     * 使用全部默认值的配置
+     */
+    public static NettyServerConfig defaultConfig() {
+        return NettyServerConfig.builder().build();
+    }
+}
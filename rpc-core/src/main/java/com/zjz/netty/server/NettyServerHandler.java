@@ -3,35 +3,69 @@ package com.zjz.netty.server;
 import com.zjz.RequestHandler;
 import com.zjz.entity.RpcRequest;
 import com.zjz.entity.RpcResponse;
+import com.zjz.enums.DispatchMode;
+import com.zjz.enums.ResponseCode;
 import com.zjz.factory.SingletonFactory;
 import com.zjz.factory.ThreadPoolFactory;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelFutureListener;
+import com.zjz.limiter.ConcurrencyLimiter;
+import com.zjz.limiter.ConcurrencyLimiterRegistry;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class NettyServerHandler extends SimpleChannelInboundHandler<RpcRequest> {
 
     private  RequestHandler requestHandler;
     private static final String THREAD_NAME_PREFIX = "netty-server-handler";
+    private static final String VIRTUAL_THREAD_NAME = "netty-server-virtual";
     private  final ExecutorService threadPool;
+    // 服务未通过注解指定时使用的执行方式
+    private final DispatchMode defaultDispatchMode;
+    // 是否合并写出响应
+    private final boolean coalesceResponses;
+    // 按方法的并发限制器，为null时不限制
+    private final ConcurrencyLimiterRegistry concurrencyLimiters;
+    // 本连接的响应写出器，在处理器加入pipeline时创建
+    private ResponseWriter responseWriter;
     public NettyServerHandler() {
+        this(NettyServerConfig.defaultConfig(), null);
+    }
+    /**
+     * @param config 服务端配置
+     * @param concurrencyLimiters 服务端共享的并发限制器，为null时不限制
+     */
+    public NettyServerHandler(NettyServerConfig config, ConcurrencyLimiterRegistry concurrencyLimiters) {
+        this.concurrencyLimiters = concurrencyLimiters;
         this.requestHandler = SingletonFactory.getInstance(RequestHandler.class);
-        this.threadPool = ThreadPoolFactory.createDefaultThreadPool(THREAD_NAME_PREFIX);
+        // 线程池按名字共享，所有连接使用同一个业务线程池
+        this.threadPool = ThreadPoolFactory.createThreadPool(THREAD_NAME_PREFIX, config.getBusinessCorePoolSize(),
+                config.getBusinessMaxPoolSize(), config.getBusinessQueueCapacity());
+        this.defaultDispatchMode = config.getDispatchMode();
+        this.coalesceResponses = config.isCoalesceResponses();
     }
 
 
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.responseWriter = new ResponseWriter(ctx, coalesceResponses);
+    }
+
     /**
      * 当通道读取到数据时的处理逻辑。具体步骤包括：
-     * 1. 使用线程池执行请求处理，避免阻塞IO线程。
+     * 1. 超过方法的并发限制时立即返回拒绝响应，不进入执行队列。
+     *    按服务的执行方式执行请求处理：直接在IO线程执行、提交到业务线程池或交给虚拟线程，
+     *    业务线程池已满时立即返回服务端繁忙的响应。
      * 2. 日志记录请求信息。
      * 3. 调用请求处理器处理请求，并构造响应。
-     * 4. 写出响应并关闭连接。
+     * 4. 写出响应，连接保持打开以供后续请求复用；处理失败时同样写回失败响应，避免客户端一直等待。
+     *    响应经{@link ResponseWriter}合并写出，同一时刻就绪的多个响应只flush一次。
      * 5. 无论处理成功与否，最后释放消息体资源。
      *
      * @param ctx 通道上下文，用于进行通道读写操作。
@@ -40,28 +74,104 @@ public class NettyServerHandler extends SimpleChannelInboundHandler<RpcRequest>
      */
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RpcRequest msg) throws Exception {
-        // 使用线程池异步处理请求，避免阻塞当前IO线程
-        threadPool.execute(() -> {
-            try {
-                // 记录接收到的请求日志
-                log.info("服务器接收到请求: {}", msg);
-
-                // 处理请求，并获取处理结果
-                Object result = requestHandler.handle(msg);
+        ConcurrencyLimiter limiter = concurrencyLimiters == null
+                ? null : concurrencyLimiters.get(msg.getInterfaceName(), msg.getMethodName());
+        if (limiter != null && !limiter.tryAcquire()) {
+            log.warn("超过并发限制{}，拒绝请求: {}#{}", limiter.getLimit(), msg.getInterfaceName(), msg.getMethodName());
+            writeResponse(ctx, RpcResponse.fail(ResponseCode.TOO_MANY_REQUESTS, msg.getRequestId()));
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        // 按请求携带的剩余超时时间计算截止时间，在队列中等到超时的请求不再执行
+        long deadlineNanos = msg.getTimeoutMillis() > 0
+                ? startNanos + TimeUnit.MILLISECONDS.toNanos(msg.getTimeoutMillis()) : 0;
+        Runnable task = () -> process(ctx, msg, limiter, startNanos, deadlineNanos);
+        DispatchMode dispatchMode = requestHandler.getDispatchMode(msg.getInterfaceName());
+        if (dispatchMode == null) {
+            dispatchMode = defaultDispatchMode;
+        }
+        if (dispatchMode == DispatchMode.DIRECT) {
+            task.run();
+            return;
+        }
+        ExecutorService executor = threadPool;
+        if (dispatchMode == DispatchMode.VIRTUAL) {
+            // 虚拟线程执行器按名字共享，当前JDK不支持时退化为业务线程池
+            ExecutorService virtualThreadExecutor = ThreadPoolFactory.createVirtualThreadExecutor(VIRTUAL_THREAD_NAME);
+            if (virtualThreadExecutor != null) {
+                executor = virtualThreadExecutor;
+            }
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // 过载时立即拒绝，让客户端尽快得知结果而不是等待超时
+            log.warn("业务线程池已满，拒绝请求: {}#{}", msg.getInterfaceName(), msg.getMethodName());
+            if (limiter != null) {
+                limiter.releaseIgnored();
+            }
+            writeResponse(ctx, RpcResponse.fail(ResponseCode.SERVER_BUSY, msg.getRequestId()));
+            ReferenceCountUtil.release(msg);
+        }
+    }
 
-                // 构造响应并写出到通道，成功时关闭连接
-                ChannelFuture future = ctx.writeAndFlush(RpcResponse.success(result, msg.getRequestId()));
+    /**
+     * 执行请求并写出响应，写出响应时归还并发许可
+     *
+     * @param ctx 通道上下文
+     * @param msg 接收到的RPC请求消息
+     * @param limiter 已获取许可的并发限制器，可以为null
+     * @param startNanos 开始处理的时间
+     * @param deadlineNanos 请求的截止时间，0表示不限制
+     */
+    private void process(ChannelHandlerContext ctx, RpcRequest msg, ConcurrencyLimiter limiter, long startNanos,
+                         long deadlineNanos) {
+        try {
+            // 记录接收到的请求日志
+            log.info("服务器接收到请求: {}", msg);
 
-                // 为写出操作添加监听器，确保在写操作失败时关闭通道
-                future.addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
-            } finally {
-                // 释放RPC请求消息资源，避免内存泄漏
-                ReferenceCountUtil.release(msg);
+            // 处理请求，并获取处理结果
+            Object result = requestHandler.handle(msg, deadlineNanos);
+            if (result instanceof CompletionStage) {
+                // 异步服务：结果就绪后再写回响应，业务线程无需等待
+                ((CompletionStage<?>) result).whenComplete((data, e) -> {
+                    if (e != null) {
+                        log.error("异步服务调用时有错误发生: ", e);
+                        complete(ctx, RpcResponse.fail(ResponseCode.FAIL, msg.getRequestId()), limiter, startNanos);
+                    } else {
+                        complete(ctx, RpcResponse.success(data, msg.getRequestId()), limiter, startNanos);
+                    }
+                });
+            } else {
+                // 处理器已经构造好失败响应时直接使用
+                complete(ctx, result instanceof RpcResponse
+                        ? (RpcResponse<?>) result
+                        : RpcResponse.success(result, msg.getRequestId()), limiter, startNanos);
             }
-        });
+        } catch (Exception e) {
+            log.error("处理请求时有错误发生: ", e);
+            complete(ctx, RpcResponse.fail(ResponseCode.FAIL, msg.getRequestId()), limiter, startNanos);
+        } finally {
+            // 释放RPC请求消息资源，避免内存泄漏
+            ReferenceCountUtil.release(msg);
+        }
     }
 
+    private void complete(ChannelHandlerContext ctx, RpcResponse<?> response, ConcurrencyLimiter limiter, long startNanos) {
+        ConcurrencyLimiterRegistry.release(limiter, response, startNanos);
+        writeResponse(ctx, response);
+    }
 
+    /**
+     * 写出响应到通道，连接保持打开。
+     *
+     * @param ctx 通道上下文
+     * @param response 要写出的响应
+     */
+    private void writeResponse(ChannelHandlerContext ctx, RpcResponse<?> response) {
+        responseWriter.write(response);
+    }
 
     /**
      * 当在处理ChannelHandlerContext时捕获到异常，此方法会被调用。
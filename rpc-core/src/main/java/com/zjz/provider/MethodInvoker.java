@@ -0,0 +1,51 @@
+package com.zjz.provider;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * 预先绑定到服务实例上的方法调用器，在服务注册时创建。
+ * 内部持有一个签名统一为 (Object[])Object 的MethodHandle，调用时无需再做反射查找。
+ */
+public class MethodInvoker {
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final Method method;
+    private final MethodHandle handle;
+
+    /**
+     * @param service 服务实例
+     * @param method  服务接口上声明的方法
+     * @throws IllegalAccessException 无法访问该方法时抛出
+     */
+    public MethodInvoker(Object service, Method method) throws IllegalAccessException {
+        this.method = method;
+        if (!method.isAccessible()) {
+            // 非public接口也允许发布
+            method.setAccessible(true);
+        }
+        this.handle = MethodHandles.lookup().unreflect(method)
+                .bindTo(service)
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(INVOKER_TYPE);
+    }
+
+    /**
+     * 调用服务方法，服务方法抛出的异常原样抛出。
+     *
+     * @param args 调用参数，无参方法可以为null
+     * @return 方法返回值，void方法返回null
+     * @throws Throwable 服务方法抛出的异常
+     */
+    public Object invoke(Object[] args) throws Throwable {
+        return (Object) handle.invokeExact(args == null ? EMPTY_ARGS : args);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+}
@@ -1,5 +1,7 @@
 package com.zjz.provider;
 
+import com.zjz.enums.DispatchMode;
+
 /**
  * 服务注册接口，提供服务的注册与获取功能。
  */
@@ -10,4 +12,22 @@ public interface ServiceProvider {
 
     Object getServiceProvider(String serviceName);
 
-}
\ No newline at end of file
+    /**
+     * 获取服务方法的调用器。
+     *
+     * @param serviceName 服务名称
+     * @param methodName  方法名称
+     * @param paramTypes  参数类型
+     * @return 对应的调用器，服务或方法不存在时返回null
+     */
+    MethodInvoker getMethodInvoker(String serviceName, String methodName, Class<?>[] paramTypes);
+
+    /**
+     * 获取服务通过{@link com.zjz.annotation.Dispatch}指定的执行方式。
+     *
+     * @param serviceName 服务名称
+     * @return 指定的执行方式，未指定或服务不存在时返回null
+     */
+    DispatchMode getDispatchMode(String serviceName);
+
+}
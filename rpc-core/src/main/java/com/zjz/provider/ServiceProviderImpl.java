@@ -1,9 +1,15 @@
 package com.zjz.provider;
 
+import com.zjz.annotation.Dispatch;
+import com.zjz.enums.DispatchMode;
 import com.zjz.enums.RpcError;
 import com.zjz.exception.RpcException;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.reflect.Method;
+
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -17,10 +23,16 @@ public class ServiceProviderImpl implements ServiceProvider {
     private static final Map<String,Object> serviceMap = new ConcurrentHashMap<>();
     // 存储已注册服务的名称，线程安全的ConcurrentHashMap的新键集
     private static final Set<String> registeredService = ConcurrentHashMap.newKeySet();
+    // 方法分派表：(服务名, 方法名, 参数类型) -> 绑定了服务实例的调用器，注册时一次性构建
+    private static final Map<MethodKey, MethodInvoker> invokerMap = new ConcurrentHashMap<>();
+    // 服务名 -> 通过注解指定的执行方式
+    private static final Map<String, DispatchMode> dispatchModes = new ConcurrentHashMap<>();
+    private static final Class<?>[] NO_PARAMS = new Class<?>[0];
 
     /**
      * 注册服务到注册表。
      * 该方法用于将一个服务实例注册到服务注册表中。如果该服务已经注册，则不会重复注册。
+     * 注册时为服务接口的每个方法预先构建调用器，请求处理时只需一次查表即可直接调用。
      * @param service 要注册的服务实例。该参数是服务的实例对象，它必须是泛型T的实例。
      * @param <T> 服务的类型。指定服务的类型，使得方法可以支持不同类型的服務注册。
      */
@@ -34,6 +46,23 @@ public class ServiceProviderImpl implements ServiceProvider {
         // 将服务名称添加到已注册服务集合中，并将服务实例添加到服务映射表中
         registeredService.add(serviceName);
         serviceMap.put(serviceName, service);
+        for (Method method : serviceClass.getMethods()) {
+            try {
+                invokerMap.put(new MethodKey(serviceName, method.getName(), method.getParameterTypes()),
+                        new MethodInvoker(service, method));
+            } catch (IllegalAccessException e) {
+                log.error("无法访问服务方法:{}#{}", serviceName, method.getName(), e);
+            }
+        }
+
+        // 接口上的注解优先于实现类上的注解
+        Dispatch dispatch = serviceClass.getAnnotation(Dispatch.class);
+        if (dispatch == null) {
+            dispatch = service.getClass().getAnnotation(Dispatch.class);
+        }
+        if (dispatch != null) {
+            dispatchModes.put(serviceName, dispatch.value());
+        }
 
         // 记录服务注册日志
         log.info("向接口：{},注册服务:{}",service.getClass().getInterfaces(),serviceName);
@@ -55,4 +84,33 @@ public class ServiceProviderImpl implements ServiceProvider {
         }
         return service; // 返回服务实例
     }
+
+    /**
+     * 查找服务方法的调用器。
+     *
+     * @param serviceName 服务名称
+     * @param methodName  方法名称
+     * @param paramTypes  参数类型
+     * @return 对应的调用器，服务或方法不存在时返回null
+     */
+    @Override
+    public MethodInvoker getMethodInvoker(String serviceName, String methodName, Class<?>[] paramTypes) {
+        return invokerMap.get(new MethodKey(serviceName, methodName, paramTypes == null ? NO_PARAMS : paramTypes));
+    }
+
+    @Override
+    public DispatchMode getDispatchMode(String serviceName) {
+        return dispatchModes.get(serviceName);
+    }
+
+    /**
+     * 分派表的键
+     */
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class MethodKey {
+        private final String serviceName;
+        private final String methodName;
+        private final Class<?>[] paramTypes;
+    }
 }
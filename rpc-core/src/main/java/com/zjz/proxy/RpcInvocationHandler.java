@@ -0,0 +1,16 @@
+package com.zjz.proxy;
+
+/**
+ * 生成的客户端存根将所有方法调用转发给该处理器。
+ */
+public interface RpcInvocationHandler {
+
+    /**
+     * 执行一次远程调用。
+     *
+     * @param method 预计算的方法元数据
+     * @param args   调用参数，无参方法为空数组
+     * @return 调用结果
+     */
+    Object invoke(RpcMethod method, Object[] args);
+}
@@ -0,0 +1,38 @@
+package com.zjz.proxy;
+
+import com.zjz.annotation.Timeout;
+import lombok.Getter;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 客户端代理方法的预计算元数据。
+ * 接口名、方法名和参数类型数组在创建代理时计算一次，之后每次调用直接复用，不再重复反射取值和复制数组。
+ */
+@Getter
+public class RpcMethod {
+
+    private final String interfaceName;
+    private final String methodName;
+    private final Class<?>[] paramTypes;
+    /**
+     * 返回值为CompletableFuture或CompletionStage的方法走异步调用
+     */
+    private final boolean async;
+    /**
+     * 通过{@link Timeout}指定的超时时间，单位毫秒，0表示使用客户端的默认值
+     */
+    private final long timeoutMillis;
+
+    public RpcMethod(Method method) {
+        this.interfaceName = method.getDeclaringClass().getName();
+        this.methodName = method.getName();
+        this.paramTypes = method.getParameterTypes();
+        Class<?> returnType = method.getReturnType();
+        this.async = returnType == CompletableFuture.class || returnType == CompletionStage.class;
+        Timeout timeout = method.getAnnotation(Timeout.class);
+        this.timeoutMillis = timeout == null ? 0 : timeout.value();
+    }
+}
@@ -0,0 +1,137 @@
+package com.zjz.proxy;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtConstructor;
+import javassist.CtField;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 使用Javassist为服务接口生成具体的存根类，作为JDK动态代理之外的另一种客户端代理实现。
+ * 每个接口只生成一个类，每个方法的方法体形如：
+ * <pre>
+ *     return ($r) this.handler.invoke(this.methods[i], $args);
+ * </pre>
+ * 方法元数据以数组常量的形式保存在存根实例中，调用时不再经过Method对象和InvocationHandler的反射分派。
+ */
+@Slf4j
+public class StubGenerator {
+
+    private static final String HANDLER_CLASS = RpcInvocationHandler.class.getName();
+    private static final String METHOD_CLASS = RpcMethod.class.getName();
+
+    // 接口 -> 已生成的存根信息
+    private static final Map<Class<?>, Stub> stubs = new ConcurrentHashMap<>();
+
+    private StubGenerator() {
+    }
+
+    /**
+     * 为接口创建存根实例。
+     *
+     * @param clazz   服务接口
+     * @param handler 远程调用处理器
+     * @param <T>     接口类型
+     * @return 实现了该接口的存根对象
+     * @throws Exception 生成或实例化存根类失败时抛出
+     */
+    public static <T> T newInstance(Class<T> clazz, RpcInvocationHandler handler) throws Exception {
+        Stub stub = stubs.get(clazz);
+        if (stub == null) {
+            synchronized (stubs) {
+                stub = stubs.get(clazz);
+                if (stub == null) {
+                    stub = generate(clazz);
+                    stubs.put(clazz, stub);
+                }
+            }
+        }
+        return clazz.cast(stub.constructor.newInstance(handler, stub.methods));
+    }
+
+    private static Stub generate(Class<?> clazz) throws Exception {
+        if (!clazz.isInterface()) {
+            throw new IllegalArgumentException(clazz.getName() + " 不是接口");
+        }
+        List<Method> methods = new ArrayList<>();
+        for (Method method : clazz.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                methods.add(method);
+            }
+        }
+
+        ClassPool pool = new ClassPool(true);
+        pool.appendClassPath(new LoaderClassPath(clazz.getClassLoader()));
+        pool.appendClassPath(new LoaderClassPath(StubGenerator.class.getClassLoader()));
+        // 存根类与接口位于同一个包中
+        CtClass ctClass = pool.makeClass(clazz.getName() + "$RpcStub");
+        ctClass.addInterface(pool.get(clazz.getName()));
+        ctClass.addField(CtField.make("private final " + HANDLER_CLASS + " handler;", ctClass));
+        ctClass.addField(CtField.make("private final " + METHOD_CLASS + "[] methods;", ctClass));
+
+        CtConstructor constructor = new CtConstructor(
+                new CtClass[]{pool.get(HANDLER_CLASS), pool.get(METHOD_CLASS + "[]")}, ctClass);
+        constructor.setBody("{ this.handler = $1; this.methods = $2; }");
+        ctClass.addConstructor(constructor);
+
+        RpcMethod[] rpcMethods = new RpcMethod[methods.size()];
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            rpcMethods[i] = new RpcMethod(method);
+            ctClass.addMethod(CtNewMethod.make(
+                    toCtClass(pool, method.getReturnType()),
+                    method.getName(),
+                    toCtClasses(pool, method.getParameterTypes()),
+                    toCtClasses(pool, method.getExceptionTypes()),
+                    "{ return ($r) this.handler.invoke(this.methods[" + i + "], $args); }",
+                    ctClass));
+        }
+
+        Class<?> stubClass = toClass(ctClass, clazz);
+        ctClass.detach();
+        log.info("已为接口 {} 生成客户端存根: {}", clazz.getName(), stubClass.getName());
+        return new Stub(stubClass.getConstructor(RpcInvocationHandler.class, RpcMethod[].class), rpcMethods);
+    }
+
+    /**
+     * 将生成的类加载到接口所在的类加载器中。
+     * JDK 9及以上通过接口所在包的Lookup定义类，JDK 8下退回到ClassLoader方式。
+     */
+    @SuppressWarnings("deprecation")
+    private static Class<?> toClass(CtClass ctClass, Class<?> neighbor) throws Exception {
+        try {
+            return ctClass.toClass(neighbor);
+        } catch (LinkageError e) {
+            return ctClass.toClass(neighbor.getClassLoader(), neighbor.getProtectionDomain());
+        }
+    }
+
+    private static CtClass toCtClass(ClassPool pool, Class<?> type) throws Exception {
+        return pool.get(type.getName());
+    }
+
+    private static CtClass[] toCtClasses(ClassPool pool, Class<?>[] types) throws Exception {
+        CtClass[] ctClasses = new CtClass[types.length];
+        for (int i = 0; i < types.length; i++) {
+            ctClasses[i] = toCtClass(pool, types[i]);
+        }
+        return ctClasses;
+    }
+
+    @AllArgsConstructor
+    private static final class Stub {
+        private final Constructor<?> constructor;
+        private final RpcMethod[] methods;
+    }
+}
@@ -0,0 +1,50 @@
+package com.zjz.registry;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.zjz.entity.RpcRequest;
+import com.zjz.enums.RpcError;
+import com.zjz.exception.RpcException;
+import com.zjz.loadbalancer.LoadBalancer;
+import com.zjz.loadbalancer.RandomLoadBalancer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * 基于{@link LocalServiceRegistry}的服务发现，不依赖Nacos。
+ */
+@Slf4j
+public class LocalServiceDiscovery implements ServiceDiscovery {
+
+    private final LocalServiceRegistry registry;
+    private final LoadBalancer loadBalancer;
+
+    public LocalServiceDiscovery(LocalServiceRegistry registry) {
+        this(registry, new RandomLoadBalancer());
+    }
+
+    public LocalServiceDiscovery(LocalServiceRegistry registry, LoadBalancer loadBalancer) {
+        this.registry = registry;
+        this.loadBalancer = loadBalancer;
+    }
+
+    @Override
+    public InetSocketAddress lookupService(String serviceName) {
+        return lookupService(serviceName, null);
+    }
+
+    /**
+     * @throws RpcException 服务没有可用实例时抛出
+     */
+    @Override
+    public InetSocketAddress lookupService(String serviceName, RpcRequest rpcRequest) {
+        List<Instance> instances = registry.getInstances(serviceName);
+        if (instances.isEmpty()) {
+            log.error("找不到对应的服务: {}", serviceName);
+            throw new RpcException(RpcError.SERVICE_NOT_FOUND, serviceName);
+        }
+        Instance instance = loadBalancer.select(serviceName, instances, rpcRequest);
+        return new InetSocketAddress(instance.getIp(), instance.getPort());
+    }
+}
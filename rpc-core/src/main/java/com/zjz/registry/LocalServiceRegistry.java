@@ -0,0 +1,70 @@
+package com.zjz.registry;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内的服务注册中心，不依赖Nacos，用于本地调试和在同一进程中运行多个服务端与客户端。
+ * 与{@link LocalServiceDiscovery}配合使用，两者共享同一个实例。
+ * 每个服务的实例列表是不可变快照，注册和注销时整体替换，查询时无需加锁。
+ */
+public class LocalServiceRegistry implements ServiceRegistry {
+
+    // 服务名称 -> 实例列表快照
+    private final Map<String, List<Instance>> services = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(String serviceName, InetSocketAddress inetSocketAddress) {
+        register(serviceName, inetSocketAddress, 1.0);
+    }
+
+    /**
+     * 以指定权重注册服务实例，重复注册同一地址时更新其权重。
+     *
+     * @param serviceName 服务名称
+     * @param inetSocketAddress 服务的网络地址
+     * @param weight 实例权重
+     */
+    public void register(String serviceName, InetSocketAddress inetSocketAddress, double weight) {
+        Instance instance = new Instance();
+        instance.setServiceName(serviceName);
+        instance.setIp(inetSocketAddress.getHostString());
+        instance.setPort(inetSocketAddress.getPort());
+        instance.setWeight(weight);
+        services.compute(serviceName, (name, instances) -> {
+            List<Instance> updated = instances == null ? new ArrayList<>() : new ArrayList<>(instances);
+            updated.removeIf(i -> i.toInetAddr().equals(instance.toInetAddr()));
+            updated.add(instance);
+            return Collections.unmodifiableList(updated);
+        });
+    }
+
+    /**
+     * 注销服务实例。
+     *
+     * @param serviceName 服务名称
+     * @param inetSocketAddress 服务的网络地址
+     */
+    public void deregister(String serviceName, InetSocketAddress inetSocketAddress) {
+        String address = inetSocketAddress.getHostString() + ":" + inetSocketAddress.getPort();
+        services.computeIfPresent(serviceName, (name, instances) -> {
+            List<Instance> updated = new ArrayList<>(instances);
+            updated.removeIf(i -> i.toInetAddr().equals(address));
+            return Collections.unmodifiableList(updated);
+        });
+    }
+
+    /**
+     * @param serviceName 服务名称
+     * @return 服务当前的实例列表快照，未注册时返回空列表
+     */
+    public List<Instance> getInstances(String serviceName) {
+        return services.getOrDefault(serviceName, Collections.emptyList());
+    }
+}
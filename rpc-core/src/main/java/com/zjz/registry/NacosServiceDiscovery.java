@@ -1,44 +1,220 @@
 package com.zjz.registry;
 
 import com.alibaba.nacos.api.exception.NacosException;
-import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
 import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.zjz.entity.RpcRequest;
+import com.zjz.enums.RpcError;
+import com.zjz.factory.ThreadPoolFactory;
+import com.zjz.exception.RpcException;
+import com.zjz.loadbalancer.LoadBalancer;
+import com.zjz.loadbalancer.RandomLoadBalancer;
 import com.zjz.util.NacosUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * 使用Nacos进行服务发现的实现类。
+ * 使用Nacos进行服务发现的实现类，从服务的实例中按负载均衡策略选出一个。
+ * <p>
+ * 各服务的实例列表缓存在本地，首次查询时从Nacos拉取并订阅变化，之后由Nacos推送更新，
+ * 调用路径上只读取不可变的实例快照，不再访问注册中心。
+ * 推送可能丢失，缓存超过有效期后由后台线程重新拉取，拉取期间继续使用旧的快照，查询不会阻塞。
+ * 只有首次查询某个服务时需要同步拉取，且只阻塞查询同一服务的线程。
+ * 每个快照带有序号，拉取开始后又收到了推送时丢弃拉取的结果，避免较旧的数据覆盖推送的数据。
+ * </p>
  */
 @Slf4j
 public class NacosServiceDiscovery implements ServiceDiscovery {
 
+    // 缓存的默认有效期
+    private static final long DEFAULT_CACHE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final String REFRESH_THREAD_NAME = "nacos-discovery-refresh";
 
+    private final LoadBalancer loadBalancer;
+    private final long cacheTtlMillis;
+    // 服务名称 -> 实例列表快照
+    private final Map<String, Snapshot> cache = new ConcurrentHashMap<>();
+    // 首次拉取时按服务加的锁
+    private final Map<String, Object> loadLocks = new ConcurrentHashMap<>();
+    // 正在后台刷新的服务
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    // 快照序号，拉取和推送各自在开始时取号
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService refreshExecutor = ThreadPoolFactory.createDefaultThreadPool(REFRESH_THREAD_NAME, true);
 
+    public NacosServiceDiscovery() {
+        this(new RandomLoadBalancer());
+    }
+
+    public NacosServiceDiscovery(LoadBalancer loadBalancer) {
+        this(loadBalancer, DEFAULT_CACHE_TTL_MILLIS);
+    }
+
+    /**
+     * @param loadBalancer 负载均衡策略
+     * @param cacheTtlMillis 实例列表缓存的有效期，超过后重新从Nacos拉取
+     */
+    public NacosServiceDiscovery(LoadBalancer loadBalancer, long cacheTtlMillis) {
+        this.loadBalancer = loadBalancer;
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
 
     /**
-     * 查询指定服务的第一个实例的地址。
+     * 查询指定服务的一个实例的地址。
      *
      * @param serviceName 要查询的服务名称。
-     * @return 返回该服务第一个实例的IP地址和端口，如果查询失败则返回null。
+     * @return 返回选中实例的IP地址和端口，如果查询失败则返回null。
      */
     @Override
     public InetSocketAddress lookupService(String serviceName) {
+        return lookupService(serviceName, null);
+    }
+
+    /**
+     * 查询指定服务的一个实例的地址。
+     *
+     * @param serviceName 要查询的服务名称。
+     * @param rpcRequest 本次调用的请求，供一致性哈希等策略生成请求键
+     * @return 返回选中实例的IP地址和端口，如果查询失败则返回null。
+     * @throws RpcException 服务没有可用实例时抛出
+     */
+    @Override
+    public InetSocketAddress lookupService(String serviceName, RpcRequest rpcRequest) {
+        List<Instance> instances = getInstances(serviceName);
+        if (instances == null) {
+            return null;
+        }
+        if (instances.isEmpty()) {
+            log.error("找不到对应的服务: {}", serviceName);
+            throw new RpcException(RpcError.SERVICE_NOT_FOUND, serviceName);
+        }
+        // 按负载均衡策略选择一个实例
+        Instance instance = loadBalancer.select(serviceName, instances, rpcRequest);
+        // 返回实例的地址信息
+        return new InetSocketAddress(instance.getIp(), instance.getPort());
+    }
+
+    /**
+     * 获取服务的实例列表，优先使用本地缓存；缓存过期时返回旧的快照并在后台刷新。
+     *
+     * @param serviceName 服务名称
+     * @return 实例列表快照，从未成功拉取过时返回null
+     */
+    private List<Instance> getInstances(String serviceName) {
+        Snapshot snapshot = cache.get(serviceName);
+        if (snapshot == null) {
+            return load(serviceName);
+        }
+        if (snapshot.expireAt <= System.currentTimeMillis()) {
+            refreshAsync(serviceName);
+        }
+        return snapshot.instances;
+    }
+
+    /**
+     * 首次查询时同步拉取并订阅，同一服务只有一个线程拉取
+     */
+    private List<Instance> load(String serviceName) {
+        synchronized (loadLocks.computeIfAbsent(serviceName, k -> new Object())) {
+            // 其他线程可能已经完成了拉取
+            Snapshot snapshot = cache.get(serviceName);
+            if (snapshot != null) {
+                return snapshot.instances;
+            }
+            if (!pull(serviceName)) {
+                return null;
+            }
+            subscribe(serviceName);
+            return cache.get(serviceName).instances;
+        }
+    }
+
+    /**
+     * 在后台重新拉取，同一服务同时只有一个刷新任务
+     */
+    private void refreshAsync(String serviceName) {
+        if (!refreshing.add(serviceName)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    pull(serviceName);
+                } finally {
+                    refreshing.remove(serviceName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池已关闭，继续使用旧的快照
+            refreshing.remove(serviceName);
+        }
+    }
+
+    /**
+     * 从Nacos拉取服务的所有实例，拉取期间收到过推送时不覆盖推送的结果
+     *
+     * @return 是否拉取成功
+     */
+    private boolean pull(String serviceName) {
+        long seq = sequence.incrementAndGet();
         try {
-            // 从Nacos获取指定服务的所有实例
-            List<Instance> instances = NacosUtil.getAllInstance(serviceName);
-            // 随机选择一个实例（这里默认选择第一个）
-            Instance instance = instances.get(0);
-            // 返回实例的地址信息
-            return new InetSocketAddress(instance.getIp(), instance.getPort());
+            update(serviceName, NacosUtil.getAllInstance(serviceName), seq);
+            return true;
         } catch (NacosException e) {
-            // 记录查询服务时发生的异常
+            // 记录查询服务时发生的异常，有旧的快照时继续使用
             log.error("获取服务时有错误发生:", e);
+            return false;
+        }
+    }
+
+    /**
+     * 订阅服务的实例变化，Nacos推送时替换本地快照
+     */
+    private void subscribe(String serviceName) {
+        try {
+            NacosUtil.subscribe(serviceName, event -> {
+                if (event instanceof NamingEvent) {
+                    update(serviceName, ((NamingEvent) event).getInstances(), sequence.incrementAndGet());
+                }
+            });
+        } catch (NacosException e) {
+            // 订阅失败时依靠缓存有效期定期拉取
+            log.error("订阅服务 {} 时有错误发生:", serviceName, e);
+        }
+    }
+
+    /**
+     * 用序号更大的数据替换快照，较旧的数据被丢弃
+     */
+    private void update(String serviceName, List<Instance> instances, long seq) {
+        Snapshot fresh = new Snapshot(instances, System.currentTimeMillis() + cacheTtlMillis, seq);
+        cache.merge(serviceName, fresh, (current, next) -> next.seq > current.seq ? next : current);
+    }
+
+    /**
+     * 不可变的实例列表快照
+     */
+    private static class Snapshot {
+        private final List<Instance> instances;
+        private final long expireAt;
+        private final long seq;
+
+        Snapshot(List<Instance> instances, long expireAt, long seq) {
+            this.instances = Collections.unmodifiableList(new ArrayList<>(instances));
+            this.expireAt = expireAt;
+            this.seq = seq;
         }
-        // 查询失败返回null
-        return null;
     }
 
 }
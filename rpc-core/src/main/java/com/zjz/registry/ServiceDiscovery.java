@@ -1,5 +1,7 @@
 package com.zjz.registry;
 
+import com.zjz.entity.RpcRequest;
+
 import java.net.InetSocketAddress;
 
 public interface ServiceDiscovery {
@@ -12,4 +14,15 @@ public interface ServiceDiscovery {
      */
     InetSocketAddress lookupService(String serviceName);
 
+    /**
+     * 为一次调用查找服务实体，请求交给负载均衡策略，供按请求路由的策略使用
+     *
+     * @param serviceName 服务名称
+     * @param rpcRequest  本次调用的请求，可以为null
+     * @return 服务实体
+     */
+    default InetSocketAddress lookupService(String serviceName, RpcRequest rpcRequest) {
+        return lookupService(serviceName);
+    }
+
 }
\ No newline at end of file
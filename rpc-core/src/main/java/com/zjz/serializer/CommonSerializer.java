@@ -1,28 +1,49 @@
 package com.zjz.serializer;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
 public interface CommonSerializer {
 
     byte[] serialize(Object obj);
 
     Object deserialize(byte[] bytes, Class<?> clazz);
 
+    /**
+     * 将对象直接序列化到ByteBuf的写指针处。
+     * 默认实现先序列化为字节数组再写入，支持流式输出的序列化器应当覆盖该方法以避免中间复制。
+     *
+     * @param obj 需要序列化的对象
+     * @param out 输出缓冲区
+     */
+    default void serialize(Object obj, ByteBuf out) {
+        out.writeBytes(serialize(obj));
+    }
+
+    /**
+     * 直接从ByteBuf中反序列化，读取其全部可读字节。
+     * 默认实现先复制为字节数组，支持直接读取缓冲区的序列化器应当覆盖该方法以避免复制。
+     *
+     * @param in    只包含消息体的缓冲区
+     * @param clazz 目标类型
+     * @return 反序列化得到的对象
+     */
+    default Object deserialize(ByteBuf in, Class<?> clazz) {
+        return deserialize(ByteBufUtil.getBytes(in), clazz);
+    }
+
     int getCode();
     Integer KRYO_SERIALIZER = 0;
     Integer JSON_SERIALIZER = 1;
     Integer HESSIAN_SERIALIZER = 2;
     Integer PROTOBUF_SERIALIZER = 3;
+    /**
+     * 根据编号获取序列化器，返回的是{@link SerializerRegistry}中共享的实例。
+     *
+     * @param code 序列化器编号
+     * @return 对应的序列化器，编号未知时返回null
+     */
     static CommonSerializer getByCode(int code) {
-        switch (code) {
-            case 0:
-                return new KryoSerializer();
-            case 1:
-                return new JsonSerializer();
-            case 2:
-                return new HessianSerializer();
-            case 3:
-                return new ProtostuffSerializer();
-            default:
-                return null;
-        }
+        return SerializerRegistry.get(code);
     }
 }
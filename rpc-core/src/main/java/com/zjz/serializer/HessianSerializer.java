@@ -4,6 +4,9 @@ import com.caucho.hessian.io.HessianInput;
 import com.caucho.hessian.io.HessianOutput;
 import com.zjz.enums.SerializerCode;
 import com.zjz.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.ByteArrayInputStream;
@@ -35,6 +38,31 @@ public class HessianSerializer implements CommonSerializer{
         }
     }
 
+    /**
+     * 通过ByteBufOutputStream直接写入输出缓冲区。
+     */
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        HessianOutput hessianOutput = null;
+        try {
+            log.info("Hessian序列化中");
+            hessianOutput = new HessianOutput(new ByteBufOutputStream(out));
+            hessianOutput.writeObject(obj);
+            hessianOutput.flush();
+        } catch (IOException e) {
+            log.error("序列化时有错误发生:", e);
+            throw new SerializeException("序列化时有错误发生");
+        } finally {
+            if(hessianOutput != null) {
+                try {
+                    hessianOutput.close();
+                } catch (IOException e) {
+                    log.error("关闭流时有错误发生:", e);
+                }
+            }
+        }
+    }
+
     @Override
     public Object deserialize(byte[] bytes, Class<?> clazz) {
         HessianInput hessianInput = null;
@@ -50,6 +78,24 @@ public class HessianSerializer implements CommonSerializer{
         }
     }
 
+    /**
+     * 通过ByteBufInputStream直接读取缓冲区，不复制消息体。
+     */
+    @Override
+    public Object deserialize(ByteBuf in, Class<?> clazz) {
+        HessianInput hessianInput = null;
+        try {
+            log.info("Hessian反序列化中");
+            hessianInput = new HessianInput(new ByteBufInputStream(in));
+            return hessianInput.readObject();
+        } catch (IOException e) {
+            log.error("序列化时有错误发生:", e);
+            throw new SerializeException("序列化时有错误发生");
+        } finally {
+            if(hessianInput != null) hessianInput.close();
+        }
+    }
+
     @Override
     public int getCode() {
         return SerializerCode.valueOf("HESSIAN").getCode();
@@ -1,13 +1,19 @@
 package com.zjz.serializer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zjz.entity.RpcRequest;
 import com.zjz.enums.SerializerCode;
 import com.zjz.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * JsonSerializer类实现了CommonSerializer接口，
@@ -16,8 +22,9 @@ import java.io.IOException;
 @Slf4j
 public class JsonSerializer implements CommonSerializer {
 
-    // ObjectMapper实例用于处理JSON序列化和反序列化
-    private ObjectMapper objectMapper = new ObjectMapper();
+    // ObjectMapper实例用于处理JSON序列化和反序列化；transient字段（如帧头中传输的请求号）不参与序列化
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(MapperFeature.PROPAGATE_TRANSIENT_MARKER, true);
 
     /**
      * 将对象序列化为JSON字节数组。
@@ -36,6 +43,23 @@ public class JsonSerializer implements CommonSerializer {
         }
     }
 
+    /**
+     * 将对象以JSON格式直接写入输出缓冲区。
+     *
+     * @param obj 需要被序列化的对象。
+     * @param out 输出缓冲区
+     */
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        try {
+            log.info("JSON序列化中。。。");
+            objectMapper.writeValue((OutputStream) new ByteBufOutputStream(out), obj);
+        } catch (IOException e) {
+            log.error("序列化时有错误发生:", e);
+            throw new SerializeException("序列化时有错误发生");
+        }
+    }
+
     /**
      * 将JSON字节数组反序列化为对象。
      *
@@ -59,6 +83,33 @@ public class JsonSerializer implements CommonSerializer {
         }
     }
 
+    /**
+     * 直接从缓冲区解析JSON：堆内缓冲区直接读取底层数组，堆外缓冲区以流的方式读取，均不复制整个消息体。
+     *
+     * @param in 只包含消息体的缓冲区
+     * @param clazz 目标对象的类类型。
+     * @return 反序列化后的对象
+     */
+    @Override
+    public Object deserialize(ByteBuf in, Class<?> clazz) {
+        try {
+            Object obj;
+            if (in.hasArray()) {
+                obj = objectMapper.readValue(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes(), clazz);
+            } else {
+                obj = objectMapper.readValue((InputStream) new ByteBufInputStream(in), clazz);
+            }
+            if(obj instanceof RpcRequest) {
+                obj = handleRequest(obj);
+            }
+            log.info("JSON反序列化中。。。");
+            return obj;
+        } catch (IOException e) {
+            log.error("反序列化时有错误发生:", e);
+            throw new SerializeException("序列化时有错误发生");
+        }
+    }
+
     /**
      * 处理RpcRequest类型的对象，确保其参数类型与实际值匹配。
      *
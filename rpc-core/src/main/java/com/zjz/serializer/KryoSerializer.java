@@ -7,48 +7,142 @@ import com.zjz.entity.RpcRequest;
 import com.zjz.entity.RpcResponse;
 import com.zjz.enums.SerializerCode;
 import com.zjz.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+/**
+ * 基于Kryo的序列化器。
+ * Kryo实例配置和注册的成本较高且不是线程安全的，这里放在有界池中复用，
+ * 每个池化对象同时带有可复用的Output/Input，序列化时不再为每条消息分配缓冲区。
+ */
 @Slf4j
 public class KryoSerializer implements CommonSerializer{
-    private static final ThreadLocal<Kryo> kryoThreadLocal = ThreadLocal.withInitial(() -> {
-        Kryo kryo = new Kryo();
-        kryo.register(RpcResponse.class);
-        kryo.register(RpcRequest.class);
-        kryo.setReferences(true);
-        kryo.setRegistrationRequired(false);
-        return kryo;
-    });
+    // 与流之间按块读写时每块的大小
+    private static final int STREAM_BUFFER_SIZE = 4096;
+    // 池化的Output缓冲区超过该大小时不再放回，避免一条大消息长期占用内存
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    // 池中最多保留的Kryo实例数，池空时临时创建，池满时直接丢弃
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    /**
+     * 需要注册的类型，注册后序列化时只写入类型编号而不是完整类名。
+     * 编号按顺序分配，收发两端必须一致，只能在末尾追加。
+     */
+    private static final Class<?>[] REGISTERED_CLASSES = {
+            RpcRequest.class,
+            RpcResponse.class,
+            Object[].class,
+            Class[].class,
+            String[].class,
+            byte[].class,
+            int[].class,
+            long[].class,
+            ArrayList.class,
+            LinkedList.class,
+            HashMap.class,
+            LinkedHashMap.class,
+            HashSet.class,
+            Date.class,
+            BigDecimal.class,
+            BigInteger.class
+    };
+
+    private final BlockingQueue<KryoHolder> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
     @Override
     public byte[] serialize(Object obj) {
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-             Output output = new Output(byteArrayOutputStream)){
-            Kryo kryo = kryoThreadLocal.get();
-            kryo.writeObject(output, obj);
-            kryoThreadLocal.remove();
-            log.info("Kryo序列化完成");
+        KryoHolder holder = borrow();
+        try {
+            Output output = holder.output;
+            output.clear();
+            holder.kryo.writeObject(output, obj);
             return output.toBytes();
         } catch (Exception e) {
             log.error("序列化时有错误发生:", e);
             throw new SerializeException("序列化时有错误发生");
+        } finally {
+            release(holder);
+        }
+    }
+
+    /**
+     * 通过ByteBufOutputStream直接写入输出缓冲区。
+     */
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        KryoHolder holder = borrow();
+        Output output = holder.output;
+        try {
+            output.setOutputStream(new ByteBufOutputStream(out));
+            holder.kryo.writeObject(output, obj);
+            output.flush();
+        } catch (Exception e) {
+            log.error("序列化时有错误发生:", e);
+            throw new SerializeException("序列化时有错误发生");
+        } finally {
+            output.setOutputStream(null);
+            release(holder);
         }
     }
 
     @Override
     public Object deserialize(byte[] bytes, Class<?> clazz) {
-        try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-             Input input = new Input(byteArrayInputStream)) {
-            Kryo kryo = kryoThreadLocal.get();
-            Object o = kryo.readObject(input, clazz);
-            kryoThreadLocal.remove();
-            log.info("Kryo反序列化完成");
+        KryoHolder holder = borrow();
+        Input input = holder.arrayInput;
+        try {
+            input.setBuffer(bytes);
+            Object o = holder.kryo.readObject(input, clazz);
+            return o;
+        } catch (Exception e) {
+            log.error("反序列化时有错误发生:", e);
+            throw new SerializeException("反序列化时有错误发生");
+        } finally {
+            input.setBuffer(EMPTY_BYTES);
+            release(holder);
+        }
+    }
+
+    /**
+     * 直接读取缓冲区，不把整个消息体复制成byte[]：
+     * 堆内缓冲区直接包装其底层数组，堆外缓冲区通过流按块读取。
+     */
+    @Override
+    public Object deserialize(ByteBuf in, Class<?> clazz) {
+        KryoHolder holder = borrow();
+        // 包装外部数组和读取流使用不同的Input，避免流读取时写入外部数组
+        Input input = in.hasArray() ? holder.arrayInput : holder.streamInput;
+        try {
+            if (in.hasArray()) {
+                input.setBuffer(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes());
+            } else {
+                input.setInputStream(new ByteBufInputStream(in));
+            }
+            Object o = holder.kryo.readObject(input, clazz);
             return o;
         } catch (Exception e) {
             log.error("反序列化时有错误发生:", e);
             throw new SerializeException("反序列化时有错误发生");
+        } finally {
+            if (input == holder.arrayInput) {
+                input.setBuffer(EMPTY_BYTES);
+            } else {
+                input.setInputStream(null);
+            }
+            release(holder);
         }
     }
 
@@ -56,4 +150,39 @@ public class KryoSerializer implements CommonSerializer{
     public int getCode() {
        return SerializerCode.valueOf("KRYO").getCode();
     }
+
+    private KryoHolder borrow() {
+        KryoHolder holder = pool.poll();
+        return holder != null ? holder : new KryoHolder();
+    }
+
+    private void release(KryoHolder holder) {
+        if (holder.output.getBuffer().length > MAX_POOLED_BUFFER_SIZE) {
+            return;
+        }
+        pool.offer(holder);
+    }
+
+    private static Kryo createKryo() {
+        Kryo kryo = new Kryo();
+        for (Class<?> clazz : REGISTERED_CLASSES) {
+            kryo.register(clazz);
+        }
+        kryo.setReferences(true);
+        kryo.setRegistrationRequired(false);
+        return kryo;
+    }
+
+    /**
+     * 池化对象：Kryo实例及与之配套复用的输入输出缓冲区
+     */
+    private static class KryoHolder {
+        private final Kryo kryo = createKryo();
+        // 可增长的输出缓冲区，也可以绑定到输出流上分块写出
+        private final Output output = new Output(STREAM_BUFFER_SIZE, -1);
+        // 直接包装外部字节数组读取
+        private final Input arrayInput = new Input();
+        // 绑定输入流时使用自身的缓冲区分块读取
+        private final Input streamInput = new Input(STREAM_BUFFER_SIZE);
+    }
 }
@@ -1,11 +1,16 @@
 package com.zjz.serializer;
 
 import com.zjz.enums.SerializerCode;
+import com.zjz.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.protostuff.ByteBufferInput;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -14,10 +19,12 @@ import static io.protostuff.runtime.RuntimeSchema.getSchema;
 
 /**
  * 使用Protostuff库实现的通用序列化器类，继承自CommonSerializer接口。
+ * 实例在多个线程间共享，序列化用的链式缓冲区按线程保存。
  */
 public class ProtostuffSerializer implements CommonSerializer{
-    // 分配一个链式缓冲区，用于序列化和反序列化过程
-    private LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+    // 每个线程一个链式缓冲区，用于序列化过程，用完清空后复用
+    private static final ThreadLocal<LinkedBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
     // 使用ConcurrentHashMap作为缓存，存储类与对应的Schema
     private Map<Class<?>, Schema<?>> schemaCache = new ConcurrentHashMap<>();
 
@@ -31,6 +38,7 @@ public class ProtostuffSerializer implements CommonSerializer{
     public byte[] serialize(Object obj) {
         Class clazz = obj.getClass(); // 获取对象的类
         Schema schema = getSchema(clazz); // 获取对应的Schema
+        LinkedBuffer buffer = BUFFER.get();
         byte[] data;
         try {
             // 使用ProtostuffIOUtil将对象序列化为字节数组
@@ -42,6 +50,25 @@ public class ProtostuffSerializer implements CommonSerializer{
         return data;
     }
 
+    /**
+     * 序列化方法，通过链式缓冲区分段写入输出缓冲区，不生成完整的中间字节数组。
+     *
+     * @param obj 需要被序列化的对象。
+     * @param out 输出缓冲区
+     */
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        Schema schema = getSchema(obj.getClass());
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            ProtostuffIOUtil.writeTo(new ByteBufOutputStream(out), obj, schema, buffer);
+        } catch (IOException e) {
+            throw new SerializeException("序列化时有错误发生");
+        } finally {
+            buffer.clear();
+        }
+    }
+
     /**
      * 反序列化方法，将字节数组转换为对象。
      *
@@ -58,6 +85,31 @@ public class ProtostuffSerializer implements CommonSerializer{
         return obj;
     }
 
+    /**
+     * 直接从缓冲区反序列化：堆内缓冲区读取底层数组，堆外缓冲区通过ByteBufferInput读取，均不复制消息体。
+     *
+     * @param in 只包含消息体的缓冲区
+     * @param clazz 目标对象的类。
+     * @return 反序列化后的对象。
+     */
+    @Override
+    public Object deserialize(ByteBuf in, Class<?> clazz) {
+        Schema schema = getSchema(clazz);
+        Object obj = schema.newMessage();
+        if (in.hasArray()) {
+            ProtostuffIOUtil.mergeFrom(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes(), obj, schema);
+        } else {
+            try {
+                ByteBufferInput input = new ByteBufferInput(in.nioBuffer().slice(), true);
+                schema.mergeFrom(input, obj);
+                input.checkLastTagWas(0);
+            } catch (IOException e) {
+                throw new SerializeException("反序列化时有错误发生");
+            }
+        }
+        return obj;
+    }
+
     /**
      * 获取序列化器的代码标识。
      *
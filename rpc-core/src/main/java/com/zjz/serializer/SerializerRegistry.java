@@ -0,0 +1,40 @@
+package com.zjz.serializer;
+
+/**
+ * 序列化器注册表，按序列化器编号保存共享的序列化器实例。
+ * 编号连续且较小，直接以编号作为下标放在数组中，解码每一帧时查找无需哈希和加锁。
+ * 注册的实例会被多个IO线程同时使用，必须是线程安全的。
+ */
+public final class SerializerRegistry {
+
+    private static final CommonSerializer[] SERIALIZERS;
+
+    static {
+        CommonSerializer[] serializers = {
+                new KryoSerializer(),
+                new JsonSerializer(),
+                new HessianSerializer(),
+                new ProtostuffSerializer()
+        };
+        SERIALIZERS = new CommonSerializer[serializers.length];
+        for (CommonSerializer serializer : serializers) {
+            SERIALIZERS[serializer.getCode()] = serializer;
+        }
+    }
+
+    private SerializerRegistry() {
+    }
+
+    /**
+     * 根据编号获取共享的序列化器实例。
+     *
+     * @param code 序列化器编号
+     * @return 对应的序列化器，编号未知时返回null
+     */
+    public static CommonSerializer get(int code) {
+        if (code < 0 || code >= SERIALIZERS.length) {
+            return null;
+        }
+        return SERIALIZERS[code];
+    }
+}
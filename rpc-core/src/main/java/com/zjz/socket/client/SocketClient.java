@@ -1,11 +1,14 @@
 package com.zjz.socket.client;
 
 import com.zjz.RpcClient;
+import com.zjz.codec.Protocol;
 import com.zjz.entity.RpcRequest;
 import com.zjz.entity.RpcResponse;
-import com.zjz.enums.ResponseCode;
 import com.zjz.enums.RpcError;
 import com.zjz.exception.RpcException;
+import com.zjz.loadbalancer.ActiveCounter;
+import com.zjz.loadbalancer.LoadBalancer;
+import com.zjz.loadbalancer.RandomLoadBalancer;
 import com.zjz.registry.NacosServiceDiscovery;
 import com.zjz.registry.NacosServiceRegistry;
 import com.zjz.registry.ServiceDiscovery;
@@ -16,20 +19,34 @@ import com.zjz.utils.ObjectReader;
 import com.zjz.utils.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.*;
+import java.io.EOFException;
+import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * SocketClient 类实现了 RpcClient 接口，通过RPC（Remote Procedure Call）发送请求。
+ * 到服务端的连接保存在{@link SocketConnectionPool}中，一条连接依次承载多个请求，不再每次调用都重新建立连接。
  * 使用@Slf4j注解以便记录日志。
  */
 @Slf4j
-public class SocketClient implements RpcClient {
+public class SocketClient implements RpcClient, AutoCloseable {
 
     private final ServiceDiscovery serviceDiscovery;
 
     private  final CommonSerializer serializer; // 序列化器
+    private final AtomicLong nextRequestId = new AtomicLong(); // 请求号生成器
+    private final SocketConnectionPool connectionPool; // 连接池
+    private final long requestTimeoutMillis; // 请求未指定超时时间时使用的超时时间
+    private final int compressor; // 请求体的压缩算法编号
+    private final int compressThreshold; // 请求体达到该大小时才压缩
+    private final int protocolVersion; // 请求使用的协议版本
+    private final boolean negotiateVersion; // 是否与服务端协商协议版本
+    private final Map<InetSocketAddress, Integer> peerVersions = new ConcurrentHashMap<>(); // 协商得到的每个服务端地址的协议版本
     /**
      * SocketClient的私有构造函数
      * 该构造函数调用了另一个构造函数SocketClient(DEFAULT_SERIALIZER)，使用默认的序列化器初始化客户端。
@@ -42,15 +59,42 @@ public class SocketClient implements RpcClient {
      * SocketClient 构造函数。初始化服务注册表。
      */
     public SocketClient(Integer serializer){
-     this.serviceDiscovery = new NacosServiceDiscovery();
+        this(serializer, new RandomLoadBalancer());
+    }
+
+    /**
+     * SocketClient 构造函数，指定服务发现使用的负载均衡策略。
+     */
+    public SocketClient(Integer serializer, LoadBalancer loadBalancer){
+        this(serializer, new NacosServiceDiscovery(loadBalancer));
+    }
+
+    /**
+     * SocketClient 构造函数，指定服务发现，例如不依赖Nacos的{@link com.zjz.registry.LocalServiceDiscovery}。
+     */
+    public SocketClient(Integer serializer, ServiceDiscovery serviceDiscovery){
+        this(serializer, serviceDiscovery, SocketClientConfig.defaultConfig());
+    }
+
+    /**
+     * SocketClient 构造函数，指定服务发现和连接池等参数。
+     */
+    public SocketClient(Integer serializer, ServiceDiscovery serviceDiscovery, SocketClientConfig config){
+     this.serviceDiscovery = serviceDiscovery;
      this.serializer = CommonSerializer.getByCode(serializer);
+     this.connectionPool = new SocketConnectionPool(config);
+     this.requestTimeoutMillis = config.getRequestTimeoutMillis();
+     this.compressor = config.getCompressor();
+     this.compressThreshold = config.getCompressThreshold();
+     this.protocolVersion = config.getProtocolVersion();
+     this.negotiateVersion = config.isNegotiateVersion() && config.getProtocolVersion() == Protocol.VERSION_1;
     }
 
     /**
      * 发送RPC请求。
      * @param rpcRequest RPC请求对象。
      * @return 返回RPC响应的数据部分。
-     * @throws RpcException 如果序列化器未设置、服务调用失败或响应状态码非成功时抛出。
+     * @throws RpcException 如果序列化器未设置、服务调用失败、超时或响应状态码非成功时抛出。
      */
     public Object sendRequest(RpcRequest rpcRequest){
         // 检查序列化器是否已设置
@@ -58,36 +102,132 @@ public class SocketClient implements RpcClient {
             log.error("未设置序列化器");
             throw new RpcException(RpcError.SERIALIZER_NOT_FOUND);
         }
-        InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest.getInterfaceName());
-        try (Socket socket = new Socket()) { // 创建socket连接
-            socket.connect(inetSocketAddress);
-            OutputStream outputStream = socket.getOutputStream();
-            InputStream inputStream = socket.getInputStream();
-
-            // 序列化请求并发送
-            ObjectWriter.writeObject(outputStream, rpcRequest, serializer);
-
-            // 接收并反序列化响应
-            Object obj = ObjectReader.readObject(inputStream);
-            RpcResponse rpcResponse = (RpcResponse) obj;
-
-            // 检查响应是否为空或状态码是否为成功
-            if(rpcResponse == null) {
-                log.error("服务调用失败，service：{}", rpcRequest.getInterfaceName());
-                throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, " service:" + rpcRequest.getInterfaceName());
-            }
-            if(rpcResponse.getStatusCode() == null || rpcResponse.getStatusCode() != ResponseCode.SUCCESS.getCode()) {
-                log.error("调用服务失败, service: {}, response:{}", rpcRequest.getInterfaceName(), rpcResponse);
-                throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, " service:" + rpcRequest.getInterfaceName());
-            }
+        InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest.getInterfaceName(), rpcRequest);
+        if (inetSocketAddress == null) {
+            throw new RpcException(RpcError.SERVICE_NOT_FOUND, rpcRequest.getInterfaceName());
+        }
+        // 取得连接、发送和等待响应共用一个截止时间，读取响应通过SO_TIMEOUT限制
+        long timeoutMillis = rpcRequest.getTimeoutMillis() > 0 ? rpcRequest.getTimeoutMillis() : requestTimeoutMillis;
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        ActiveCounter.begin(inetSocketAddress);
+        try {
+            RpcResponse<?> rpcResponse = invoke(inetSocketAddress, rpcRequest, deadlineNanos);
+            // 检查响应是否为空、请求号是否匹配以及状态码是否为成功
             RpcMessageChecker.check(rpcRequest, rpcResponse);
             // 返回响应数据
             return rpcResponse.getData();
+        } catch (SocketTimeoutException e) {
+            log.warn("调用超时, service: {}", rpcRequest.getInterfaceName());
+            throw new RpcException(RpcError.REQUEST_TIMEOUT, rpcRequest.getInterfaceName() + "#" + rpcRequest.getMethodName());
         } catch (IOException e) {
              log.error("调用时有错误发生", e);
              throw new RpcException("服务调用失败",e);
+        } finally {
+            ActiveCounter.end(inetSocketAddress);
         }
 
     }
 
+    /**
+     * 关闭客户端，关闭连接池中的空闲连接
+     */
+    @Override
+    public void close() {
+        connectionPool.close();
+    }
+
+    /**
+     * 从连接池借出连接发送请求并读取响应，完整收到响应后归还连接，出错时丢弃连接。
+     * 复用的连接可能已经被服务端关闭：发送请求时就失败的，服务端没有收到完整的请求，换一条连接重试；
+     * 请求已经发出、等待响应时连接被关闭的，服务端可能已经执行了请求，不自动重发，由调用方决定是否重试。
+     */
+    private RpcResponse<?> invoke(InetSocketAddress address, RpcRequest rpcRequest, long deadlineNanos) throws IOException {
+        while (true) {
+            SocketConnectionPool.PooledSocket socket = connectionPool.borrow(address, deadlineNanos);
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remainingMillis <= 0) {
+                connectionPool.release(socket);
+                throw new SocketTimeoutException("取得连接后已经超时");
+            }
+            int version;
+            try {
+                socket.setSoTimeout((int) Math.min(remainingMillis, Integer.MAX_VALUE));
+                version = negotiatedVersion(address, socket);
+            } catch (IOException | RuntimeException e) {
+                connectionPool.invalidate(socket);
+                throw e;
+            }
+            if (version < 0) {
+                continue;
+            }
+            try {
+                // 分配请求号，携带剩余的超时时间，序列化请求并发送
+                rpcRequest.setRequestId(nextRequestId.incrementAndGet());
+                rpcRequest.setTimeoutMillis(remainingMillis);
+                ObjectWriter.writeObject(socket.getOutputStream(), rpcRequest, serializer, compressor, compressThreshold,
+                        version);
+            } catch (IOException e) {
+                // 写出失败时服务端收到的帧不完整，不会执行请求，可以安全地换连接重试
+                connectionPool.invalidate(socket);
+                if (!socket.isReused()) {
+                    throw e;
+                }
+                log.info("连接已被服务端关闭，请求未发出，使用新连接重试: {}", address);
+                continue;
+            } catch (RuntimeException e) {
+                connectionPool.invalidate(socket);
+                throw e;
+            }
+            RpcResponse<?> rpcResponse;
+            try {
+                // 接收并反序列化响应
+                rpcResponse = (RpcResponse<?>) ObjectReader.readObject(socket.awaitResponse());
+            } catch (IOException | RuntimeException e) {
+                // 超时或出错后连接上可能还有未读完的数据，不能再复用
+                connectionPool.invalidate(socket);
+                throw e;
+            }
+            if (rpcResponse.getRequestId() != rpcRequest.getRequestId()) {
+                // 连接上的数据已经错位，不能再复用
+                connectionPool.invalidate(socket);
+                throw new RpcException(RpcError.RESPONSE_NOT_MATCH, rpcRequest.getInterfaceName());
+            }
+            connectionPool.release(socket);
+            return rpcResponse;
+        }
+    }
+
+    /**
+     * 返回向该地址发送请求使用的协议版本。开启了版本协商且还不知道服务端是否支持v2时，先在这条连接上发送版本探测：
+     * 收到v2的PONG说明服务端支持v2；收到v1的PONG，或者新建的连接被服务端关闭（更早的服务端不认识心跳帧，会关闭连接），
+     * 说明服务端只支持v1。结果按地址记录，之后的请求不再探测。
+     *
+     * @return 协议版本，探测时连接被关闭、需要换一条连接时返回-1
+     */
+    private int negotiatedVersion(InetSocketAddress address, SocketConnectionPool.PooledSocket socket) throws IOException {
+        if (!negotiateVersion) {
+            return protocolVersion;
+        }
+        Integer known = peerVersions.get(address);
+        if (known != null) {
+            return known;
+        }
+        int version;
+        try {
+            socket.getOutputStream().write(Protocol.versionProbeFrame(serializer.getCode()));
+            socket.getOutputStream().flush();
+            version = ObjectReader.readPongVersion(socket.awaitResponse());
+        } catch (EOFException e) {
+            connectionPool.invalidate(socket);
+            // 复用的连接可能只是空闲太久被服务端关闭，不能据此判断服务端的版本
+            if (!socket.isReused()) {
+                log.info("服务端不支持版本探测，使用v1: {}", address);
+                peerVersions.put(address, Protocol.VERSION_1);
+            }
+            return -1;
+        }
+        peerVersions.put(address, version);
+        return version;
+    }
+
 }
@@ -0,0 +1,72 @@
+package com.zjz.socket.client;
+
+import com.zjz.RpcClient;
+import com.zjz.codec.Protocol;
+import com.zjz.compress.Compressor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Socket客户端的可调参数，通过builder构建，未设置的参数使用默认值。
+ */
+@Getter
+@Builder
+public class SocketClientConfig {
+
+    /**
+     * 每个服务端地址最多同时使用的连接数，连接都在使用中时调用方等待其他调用归还连接
+     */
+    @Builder.Default
+    private int maxConnectionsPerEndpoint = 8;
+
+    /**
+     * 空闲连接的最长保留时间，单位毫秒，超过后关闭
+     */
+    @Builder.Default
+    private long idleTimeoutMillis = 60000;
+
+    /**
+     * 建立连接的超时时间，单位毫秒，同时受请求剩余超时时间的限制
+     */
+    @Builder.Default
+    private int connectTimeoutMillis = 5000;
+
+    /**
+     * 请求的默认超时时间，单位毫秒，请求通过{@link com.zjz.annotation.Timeout}指定时以指定的为准
+     */
+    @Builder.Default
+    private long requestTimeoutMillis = RpcClient.DEFAULT_TIMEOUT_MILLIS;
+
+    /**
+     * 消息体的压缩算法编号，见{@link Compressor}，默认不压缩。对端需要使用支持压缩的版本
+     */
+    @Builder.Default
+    private int compressor = Compressor.NO_COMPRESSOR;
+
+    /**
+     * 压缩阈值，单位字节，消息体达到该大小时才压缩，较小的消息压缩的收益不足以抵消CPU开销
+     */
+    @Builder.Default
+    private int compressThreshold = Compressor.DEFAULT_THRESHOLD;
+
+    /**
+     * 发送请求使用的协议版本，见{@link Protocol}，默认从v1开始，开启版本协商时确认服务端支持v2后改用帧头更短、可以携带附加信息的v2。
+     * 服务端按请求的版本回复；确定所有服务端都支持v2时可以直接设为{@link Protocol#VERSION_2}，省去协商
+     */
+    @Builder.Default
+    private int protocolVersion = Protocol.VERSION_1;
+
+    /**
+     * 协议版本为v1时是否与服务端协商版本：第一次连接每个服务端地址时发送版本探测，结果按地址记录，
+     * 收到v2的回复后改用v2，只支持v1的旧版本服务端继续使用v1
+     */
+    @Builder.Default
+    private boolean negotiateVersion = true;
+
+    /**
+     * 使用全部默认值的配置
+     */
+    public static SocketClientConfig defaultConfig() {
+        return SocketClientConfig.builder().build();
+    }
+}
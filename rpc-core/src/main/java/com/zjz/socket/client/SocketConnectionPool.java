@@ -0,0 +1,260 @@
+package com.zjz.socket.client;
+
+import com.zjz.enums.RpcError;
+import com.zjz.exception.RpcException;
+import com.zjz.factory.ThreadPoolFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SocketClient}使用的阻塞Socket连接池，按服务端地址维护长连接。
+ * <p>
+ * 每个地址最多同时借出{@link SocketClientConfig#getMaxConnectionsPerEndpoint()}条连接，连接用完归还后供后续请求复用，
+ * 省去每次调用的TCP握手。空闲连接按后进先出复用，长时间不用的连接集中在队尾，由后台任务按空闲时间关闭。
+ * 空闲超过一定时间的连接在借出前检查是否已被服务端关闭，此时还没有发送请求，丢弃失效的连接是安全的。
+ * 连接池关闭后不再借出连接，关闭时仍借出的连接在归还时直接关闭。
+ * </p>
+ */
+@Slf4j
+class SocketConnectionPool {
+
+    private static final String EVICTOR_THREAD_NAME = "socket-client-evictor";
+    private static final int BUFFER_SIZE = 8 * 1024;
+    // 空闲超过该时间的连接在借出前检查是否仍然可用
+    private static final long VALIDATE_AFTER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int maxConnectionsPerEndpoint;
+    private final long idleTimeoutNanos;
+    private final int connectTimeoutMillis;
+    private final Map<InetSocketAddress, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> evictionTask;
+    private volatile boolean closed;
+
+    SocketConnectionPool(SocketClientConfig config) {
+        this.maxConnectionsPerEndpoint = Math.max(1, config.getMaxConnectionsPerEndpoint());
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        this.connectTimeoutMillis = config.getConnectTimeoutMillis();
+        // 每半个空闲时间检查一次，最短一秒
+        long period = Math.max(1000, config.getIdleTimeoutMillis() / 2);
+        this.evictionTask = ThreadPoolFactory.createScheduledThreadPool(EVICTOR_THREAD_NAME)
+                .scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 借出一条到指定地址的连接，没有空闲连接时新建；连接数已满时等待其他调用归还，最多等到截止时间。
+     *
+     * @param address 服务端地址
+     * @param deadlineNanos 截止时间，以{@link System#nanoTime()}为基准
+     * @return 可用的连接，用完后必须调用{@link #release}或{@link #invalidate}
+     * @throws SocketTimeoutException 截止时间前没有取得连接
+     * @throws IOException 建立连接失败
+     * @throws RpcException 连接池已经关闭
+     */
+    PooledSocket borrow(InetSocketAddress address, long deadlineNanos) throws IOException {
+        if (closed) {
+            throw new RpcException(RpcError.CLIENT_CLOSED);
+        }
+        Endpoint endpoint = endpoints.computeIfAbsent(address, Endpoint::new);
+        try {
+            if (!endpoint.permits.tryAcquire(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                throw new SocketTimeoutException("等待可用连接超时: " + address);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待可用连接被中断");
+        }
+        try {
+            PooledSocket socket;
+            while ((socket = endpoint.idle.pollFirst()) != null) {
+                if (socket.isUsable() && !socket.isStale()) {
+                    return socket;
+                }
+                socket.closeQuietly();
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remainingMillis <= 0) {
+                throw new SocketTimeoutException("等待可用连接超时: " + address);
+            }
+            return connect(endpoint, (int) Math.min(connectTimeoutMillis, remainingMillis));
+        } catch (IOException | RuntimeException e) {
+            endpoint.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 归还一条状态正常的连接（请求和响应都已完整收发），连接池已经关闭时直接关闭连接
+     */
+    void release(PooledSocket socket) {
+        socket.lastUsedNanos = System.nanoTime();
+        socket.reused = true;
+        socket.endpoint.idle.offerFirst(socket);
+        // 先放回再检查，与close()并发时连接要么被close()关闭，要么在这里关闭
+        if (closed && socket.endpoint.idle.remove(socket)) {
+            socket.closeQuietly();
+        }
+        socket.endpoint.permits.release();
+    }
+
+    /**
+     * 丢弃一条出错或状态未知的连接
+     */
+    void invalidate(PooledSocket socket) {
+        socket.closeQuietly();
+        socket.endpoint.permits.release();
+    }
+
+    /**
+     * 关闭所有空闲连接并停止空闲检查，借出中的连接在归还时关闭
+     */
+    void close() {
+        closed = true;
+        evictionTask.cancel(false);
+        for (Endpoint endpoint : endpoints.values()) {
+            PooledSocket socket;
+            while ((socket = endpoint.idle.pollFirst()) != null) {
+                socket.closeQuietly();
+            }
+        }
+    }
+
+    private PooledSocket connect(Endpoint endpoint, int timeoutMillis) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.connect(endpoint.address, timeoutMillis);
+            return new PooledSocket(endpoint, socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (Endpoint endpoint : endpoints.values()) {
+            // 队尾是最久未使用的连接
+            Iterator<PooledSocket> iterator = endpoint.idle.descendingIterator();
+            while (iterator.hasNext()) {
+                PooledSocket socket = iterator.next();
+                if (now - socket.lastUsedNanos < idleTimeoutNanos) {
+                    break;
+                }
+                if (endpoint.idle.removeLastOccurrence(socket)) {
+                    log.info("关闭空闲连接: {}", endpoint.address);
+                    socket.closeQuietly();
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个服务端地址的连接：限制连接数的许可和空闲连接队列
+     */
+    private class Endpoint {
+        private final InetSocketAddress address;
+        private final Semaphore permits = new Semaphore(maxConnectionsPerEndpoint);
+        private final Deque<PooledSocket> idle = new ConcurrentLinkedDeque<>();
+
+        Endpoint(InetSocketAddress address) {
+            this.address = address;
+        }
+    }
+
+    /**
+     * 池中的连接，带缓冲的输入输出流随连接复用
+     */
+    class PooledSocket {
+        private final Endpoint endpoint;
+        private final Socket socket;
+        private final OutputStream outputStream;
+        private final PushbackInputStream inputStream;
+        private volatile long lastUsedNanos = System.nanoTime();
+        // 是否已经完成过请求，复用的连接可能已被服务端关闭
+        private boolean reused;
+
+        PooledSocket(Endpoint endpoint, Socket socket) throws IOException {
+            this.endpoint = endpoint;
+            this.socket = socket;
+            this.outputStream = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+            this.inputStream = new PushbackInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        }
+
+        OutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        /**
+         * 等待响应的第一个字节，返回可以读取完整响应的输入流。
+         *
+         * @throws EOFException 对端在响应之前关闭了连接
+         */
+        InputStream awaitResponse() throws IOException {
+            int first = inputStream.read();
+            if (first < 0) {
+                throw new EOFException("连接已被服务端关闭");
+            }
+            inputStream.unread(first);
+            return inputStream;
+        }
+
+        void setSoTimeout(int timeoutMillis) throws IOException {
+            socket.setSoTimeout(timeoutMillis);
+        }
+
+        boolean isReused() {
+            return reused;
+        }
+
+        private boolean isUsable() {
+            return !socket.isClosed() && System.nanoTime() - lastUsedNanos < idleTimeoutNanos;
+        }
+
+        /**
+         * 空闲较久的连接尝试读取一次，最多等待1毫秒：服务端已关闭连接时立即读到流结束，
+         * 读到数据同样说明连接状态异常；等待超时说明连接仍然可用
+         */
+        private boolean isStale() {
+            if (System.nanoTime() - lastUsedNanos < VALIDATE_AFTER_IDLE_NANOS) {
+                return false;
+            }
+            try {
+                socket.setSoTimeout(1);
+                inputStream.read();
+                return true;
+            } catch (SocketTimeoutException e) {
+                return false;
+            } catch (IOException e) {
+                return true;
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.warn("关闭连接时有错误发生", e);
+            }
+        }
+    }
+}
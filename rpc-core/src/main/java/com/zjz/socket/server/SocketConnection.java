@@ -0,0 +1,175 @@
+package com.zjz.socket.server;
+
+import com.zjz.codec.Protocol;
+import com.zjz.enums.RpcError;
+import com.zjz.exception.RpcException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link SocketServer}上的一条客户端连接。
+ * 读取和写出都在选择器线程中进行：读到的数据按帧头中的长度切分为完整的帧；
+ * 业务线程通过{@link #send(ByteBuffer[])}提交响应，由选择器线程写出，写不完时注册OP_WRITE等待继续写。
+ * 记录最后一次读写的时间，供服务端关闭长时间空闲的连接。
+ */
+@Slf4j
+class SocketConnection {
+
+    // 读缓冲区的初始大小，读到大帧时临时扩大，处理完后恢复
+    private static final int INITIAL_READ_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final SocketServer server;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+    // 每个元素是一个响应帧的帧头和数据
+    private final Queue<ByteBuffer[]> writeQueue = new ConcurrentLinkedQueue<>();
+    // 是否已经提交给选择器线程写出，避免每个响应都唤醒一次选择器
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    // 最后一次读到数据或提交响应的时间，以System.nanoTime()为基准
+    private volatile long lastActiveNanos = System.nanoTime();
+
+    SocketConnection(SocketChannel channel, SelectionKey key, SocketServer server) {
+        this.channel = channel;
+        this.key = key;
+        this.server = server;
+    }
+
+    /**
+     * 从连接读取数据，把读到的完整帧加入frames。只在选择器线程中调用。
+     *
+     * @param frames 用于收集完整帧的列表
+     * @return 对端已关闭连接时返回false
+     * @throws IOException 读取失败时抛出
+     * @throws RpcException 帧头不合法时抛出
+     */
+    boolean read(List<byte[]> frames) throws IOException {
+        int n = channel.read(readBuffer);
+        if (n < 0) {
+            return false;
+        }
+        lastActiveNanos = System.nanoTime();
+        readBuffer.flip();
+        while (readBuffer.hasRemaining()) {
+            int start = readBuffer.position();
+            // 按第一个字节区分协议版本，两个版本的帧头长度和长度字段的位置不同
+            int version = Protocol.version(readBuffer.get(start));
+            if (version < 0) {
+                log.error("不识别的协议包: {}", readBuffer.get(start));
+                throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+            }
+            int headerLength = Protocol.headerLength(version);
+            if (readBuffer.remaining() < headerLength) {
+                break;
+            }
+            if (version == Protocol.VERSION_1 && readBuffer.getInt(start) != Protocol.MAGIC_NUMBER) {
+                log.error("不识别的协议包: {}", readBuffer.getInt(start));
+                throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+            }
+            int length = readBuffer.getInt(start + Protocol.lengthFieldOffset(version));
+            if (length < 0 || length > MAX_FRAME_LENGTH) {
+                log.error("数据包长度不合法: {}", length);
+                throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+            }
+            int frameLength = headerLength + length;
+            if (readBuffer.remaining() < frameLength) {
+                if (readBuffer.capacity() < frameLength) {
+                    // 缓冲区放不下整个帧，扩大到帧的大小
+                    ByteBuffer larger = ByteBuffer.allocate(frameLength);
+                    larger.put(readBuffer);
+                    readBuffer = larger;
+                    return true;
+                }
+                break;
+            }
+            byte[] frame = new byte[frameLength];
+            readBuffer.get(frame);
+            frames.add(frame);
+        }
+        if (!readBuffer.hasRemaining() && readBuffer.capacity() > INITIAL_READ_BUFFER_SIZE) {
+            // 大帧已经处理完，恢复为初始大小的缓冲区
+            readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+        } else {
+            readBuffer.compact();
+        }
+        return true;
+    }
+
+    /**
+     * 提交一个待写出的响应帧，可以在任意线程调用
+     *
+     * @param frame 组成响应帧的缓冲区，写出时一次聚集写
+     */
+    void send(ByteBuffer[] frame) {
+        if (!channel.isOpen()) {
+            return;
+        }
+        writeQueue.add(frame);
+        lastActiveNanos = System.nanoTime();
+        if (writeScheduled.compareAndSet(false, true)) {
+            server.scheduleWrite(this);
+        }
+    }
+
+    /**
+     * 写出队列中的响应，写不完时注册OP_WRITE。只在选择器线程中调用。
+     *
+     * @throws IOException 写出失败时抛出
+     */
+    void flush() throws IOException {
+        writeScheduled.set(false);
+        ByteBuffer[] buffers;
+        while ((buffers = writeQueue.peek()) != null) {
+            channel.write(buffers);
+            if (buffers[buffers.length - 1].hasRemaining()) {
+                // 发送缓冲区已满，等待可写时继续
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            writeQueue.poll();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * 连接是否已经空闲超过指定时间：期间没有读到数据，也没有提交或待写出的响应
+     *
+     * @param nowNanos 当前时间
+     * @param idleTimeoutNanos 空闲超时时间
+     */
+    boolean isIdle(long nowNanos, long idleTimeoutNanos) {
+        return writeQueue.isEmpty() && nowNanos - lastActiveNanos >= idleTimeoutNanos;
+    }
+
+    boolean isOpen() {
+        return key.isValid();
+    }
+
+    void close() {
+        key.cancel();
+        writeQueue.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("关闭连接时有错误发生", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "closed";
+        }
+    }
+}
@@ -1,57 +1,148 @@
 package com.zjz.socket.server;
 
 import com.zjz.RequestHandler;
+import com.zjz.codec.Protocol;
+import com.zjz.compress.Compressor;
 import com.zjz.entity.RpcRequest;
 import com.zjz.entity.RpcResponse;
-import com.zjz.provider.ServiceProvider;
-import com.zjz.registry.ServiceRegistry;
+import com.zjz.enums.ResponseCode;
+import com.zjz.limiter.ConcurrencyLimiter;
+import com.zjz.limiter.ConcurrencyLimiterRegistry;
 import com.zjz.serializer.CommonSerializer;
 import com.zjz.utils.ObjectReader;
 import com.zjz.utils.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.*;
-import java.net.Socket;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 处理一个RPC请求的任务，由{@link SocketServer}在业务线程池中执行。
+ * 连接由选择器线程统一读写，任务只负责反序列化请求帧、调用服务并把响应帧交给连接写出，
+ * 同一条连接上的多个请求可以并行处理。
+ * 请求使用了压缩时，响应使用相同的压缩算法，发送未压缩请求的旧版本客户端不会收到压缩的响应；
+ * 响应也使用与请求相同的协议版本，v1客户端不会收到v2帧；客户端的版本探测以v2的PONG回复。
+ * 配置了并发限制时，请求解析后先获取对应方法的许可，超过限制时立即返回拒绝响应，不调用服务；
+ * 成功的请求以从收到请求帧到完成的耗时归还许可。
+ */
 @Slf4j
 public class SocketRequestHandlerThread implements Runnable {
 
-    private Socket socket; // 客户端的Socket连接
+    private final SocketConnection connection; // 请求所在的客户端连接
+    private final byte[] frame; // 完整的请求帧
+    private final long receivedNanos; // 收到请求帧的时间
     private RequestHandler requestHandler; // 处理RPC请求的处理器
 
-    private CommonSerializer serializer; // 序列化工具，用于序列化和反序列化数据
+    private CommonSerializer serializer; // 序列化工具，用于序列化响应
+    private final ConcurrencyLimiterRegistry concurrencyLimiters; // 按方法的并发限制器，为null时不限制
 
     /**
      * SocketRequestHandlerThread构造函数。
      *
-     * @param socket 与客户端建立的Socket连接。
+     * @param connection 请求所在的客户端连接。
+     * @param frame 完整的请求帧，包括帧头。
+     * @param receivedNanos 收到请求帧的时间，用于计算请求的截止时间。
      * @param requestHandler 用于处理RPC请求的请求处理器。
-     * @param serializer 通用序列化工具，支持将对象序列化为字节流和从字节流反序列化对象。
+     * @param serializer 通用序列化工具，用于序列化响应。
+     * @param concurrencyLimiters 服务端共享的并发限制器，为null时不限制。
      */
-    public SocketRequestHandlerThread(Socket socket, RequestHandler requestHandler, CommonSerializer serializer) {
-        this.socket = socket;
+    SocketRequestHandlerThread(SocketConnection connection, byte[] frame, long receivedNanos,
+                               RequestHandler requestHandler, CommonSerializer serializer,
+                               ConcurrencyLimiterRegistry concurrencyLimiters) {
+        this.connection = connection;
+        this.frame = frame;
+        this.receivedNanos = receivedNanos;
         this.requestHandler = requestHandler;
         this.serializer = serializer;
+        this.concurrencyLimiters = concurrencyLimiters;
     }
 
     /**
-     * 重写的run方法是线程的执行体。
-     * 它主要负责接收客户端的RPC请求，解析请求，调用相应的服务方法，并将结果返回给客户端。
+     * 解析请求，调用相应的服务方法，并将结果写回给客户端。
+     * 异步服务在结果就绪后再写回，业务线程无需等待。
      */
     @Override
     public void run() {
-        try (InputStream inputStream = socket.getInputStream();
-             OutputStream outputStream = socket.getOutputStream()) {
-            // 从输入流读取RPC请求并反序列化
-            RpcRequest rpcRequest = (RpcRequest) ObjectReader.readObject(inputStream);
+        if (Protocol.isVersionProbe(frame)) {
+            // 以v2的PONG回复版本探测，客户端随后改用v2
+            connection.send(new ByteBuffer[]{ByteBuffer.wrap(Protocol.versionAckFrame())});
+            return;
+        }
+        RpcRequest rpcRequest;
+        try {
+            // 从请求帧读取RPC请求并反序列化
+            rpcRequest = (RpcRequest) ObjectReader.readObject(new ByteArrayInputStream(frame));
+        } catch (Exception e) {
+            // 帧的边界由帧头确定，消息体损坏不影响后续的帧，只让这次调用失败，连接继续使用
+            long requestId = Protocol.peekRequestId(frame);
+            log.error("解析请求时有错误发生: {}, requestId={}", connection, requestId, e);
+            respond(connection, RpcResponse.fail(ResponseCode.FAIL, requestId), serializer, Compressor.NO_COMPRESSOR,
+                    Protocol.version(frame[0]));
+            return;
+        }
+        int compressor = Protocol.peekCompressor(frame);
+        int version = Protocol.version(frame[0]);
+        ConcurrencyLimiter limiter = concurrencyLimiters == null
+                ? null : concurrencyLimiters.get(rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+        if (limiter != null && !limiter.tryAcquire()) {
+            log.warn("超过并发限制{}，拒绝请求: {}#{}", limiter.getLimit(), rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+            respond(connection, RpcResponse.fail(ResponseCode.TOO_MANY_REQUESTS, rpcRequest.getRequestId()), serializer,
+                    compressor, version);
+            return;
+        }
+        long deadlineNanos = rpcRequest.getTimeoutMillis() > 0
+                ? receivedNanos + TimeUnit.MILLISECONDS.toNanos(rpcRequest.getTimeoutMillis()) : 0;
+        Object result;
+        try {
             // 处理RPC请求，获取结果
-            Object result = requestHandler.handle(rpcRequest);
-            // 将调用结果封装成RPC响应，写入输出流
-            RpcResponse<Object> response = RpcResponse.success(result, rpcRequest.getRequestId());
-            ObjectWriter.writeObject(outputStream, response, serializer);
-        } catch (IOException e) {
-            // 记录读写异常日志
-            log.error("调用或发送时有错误发生", e);
+            result = requestHandler.handle(rpcRequest, deadlineNanos);
+        } catch (Exception e) {
+            log.error("处理请求时有错误发生: ", e);
+            result = RpcResponse.fail(ResponseCode.FAIL, rpcRequest.getRequestId());
+        }
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((data, e) -> {
+                if (e != null) {
+                    log.error("异步服务调用时有错误发生: ", e);
+                    complete(RpcResponse.fail(ResponseCode.FAIL, rpcRequest.getRequestId()), limiter, compressor, version);
+                } else {
+                    complete(RpcResponse.success(data, rpcRequest.getRequestId()), limiter, compressor, version);
+                }
+            });
+            return;
+        }
+        // 将调用结果封装成RPC响应；处理器已经构造好失败响应时直接使用
+        complete(result instanceof RpcResponse
+                ? (RpcResponse<?>) result
+                : RpcResponse.success(result, rpcRequest.getRequestId()), limiter, compressor, version);
+    }
+
+    /**
+     * 归还并发许可并写出响应
+     */
+    private void complete(RpcResponse<?> response, ConcurrencyLimiter limiter, int compressor, int version) {
+        ConcurrencyLimiterRegistry.release(limiter, response, receivedNanos);
+        respond(connection, response, serializer, compressor, version);
+    }
+
+    /**
+     * 按指定的协议版本序列化响应，响应体达到默认的压缩阈值时使用指定的压缩算法压缩，并交给连接写出。
+     * 帧头和数据分别放在两个缓冲区中聚集写出，数据不再复制
+     */
+    static void respond(SocketConnection connection, RpcResponse<?> response, CommonSerializer serializer, int compressor,
+                        int protocolVersion) {
+        try {
+            connection.send(ObjectWriter.encode(response, serializer, compressor, Compressor.DEFAULT_THRESHOLD,
+                    protocolVersion));
+        } catch (Exception e) {
+            log.error("序列化响应时有错误发生", e);
+            if (response.getStatusCode() != null && response.getStatusCode() == ResponseCode.SUCCESS.getCode()) {
+                // 返回值无法序列化时告知客户端调用失败，避免客户端一直等到超时
+                respond(connection, RpcResponse.fail(ResponseCode.FAIL, response.getRequestId()), serializer, compressor,
+                        protocolVersion);
+            }
         }
     }
 }
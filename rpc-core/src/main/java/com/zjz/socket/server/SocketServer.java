@@ -2,9 +2,15 @@ package com.zjz.socket.server;
 
 import com.zjz.RequestHandler;
 import com.zjz.RpcServer;
+import com.zjz.codec.Protocol;
+import com.zjz.compress.Compressor;
+import com.zjz.entity.RpcResponse;
+import com.zjz.enums.ResponseCode;
 import com.zjz.enums.RpcError;
 import com.zjz.exception.RpcException;
 import com.zjz.hook.ShutdownHook;
+import com.zjz.limiter.ConcurrencyLimiter;
+import com.zjz.limiter.ConcurrencyLimiterRegistry;
 import com.zjz.provider.ServiceProvider;
 import com.zjz.provider.ServiceProviderImpl;
 import com.zjz.registry.NacosServiceRegistry;
@@ -15,15 +21,38 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.*;
+import java.util.function.Function;
 
 /**
  * 基于Socket实现的RPC服务端类，继承自RpcServer接口。
+ * <p>
+ * 使用一个选择器线程以非阻塞方式接收连接和读写数据，连接保持打开，同一条连接上可以连续发送多个请求；
+ * 读到的每个完整请求帧作为一个任务交给业务线程池处理，响应由选择器线程写回。
+ * 连接不再各自占用线程，少量线程即可服务大量客户端。
+ * 选择器线程定期关闭超过空闲超时时间没有任何读写的连接，客户端异常退出后遗留的连接不会一直占用资源。
+ * </p>
  */
 @Slf4j
 public class SocketServer implements RpcServer {
+    private static final String THREAD_NAME_PREFIX = "socket-rpc-server";
+    // 业务线程池参数，队列满且线程数达到最大值时返回服务端繁忙
+    private static final int BUSINESS_CORE_POOL_SIZE = 10;
+    private static final int BUSINESS_MAX_POOL_SIZE = 100;
+    private static final int BUSINESS_QUEUE_CAPACITY = 1000;
+    // 连接的空闲超时时间，应大于客户端连接池的空闲超时时间
+    private static final long IDLE_TIMEOUT_MILLIS = 90000;
+    // 检查空闲连接的间隔
+    private static final long IDLE_CHECK_INTERVAL_MILLIS = IDLE_TIMEOUT_MILLIS / 3;
+
     // 线程池，用于处理客户端请求
     private final ExecutorService threadPool;
     // 序列化器，用于序列化和反序列化数据
@@ -40,6 +69,12 @@ public class SocketServer implements RpcServer {
     private final ServiceRegistry serviceRegistry;
     // 服务提供者，用于管理提供的服务
     private final ServiceProvider serviceProvider;
+    // 按方法的并发限制器，为null时不限制
+    private final ConcurrencyLimiterRegistry concurrencyLimiters;
+    // 选择器，服务端启动后创建
+    private Selector selector;
+    // 业务线程提交的待写出连接，由选择器线程统一写出
+    private final Queue<SocketConnection> pendingWrites = new ConcurrentLinkedQueue<>();
     public SocketServer(String host, int port){
         this(host,port,DEFAULT_SERIALIZER);
     }
@@ -50,40 +85,98 @@ public class SocketServer implements RpcServer {
      * @param port 服务监听的端口号
      */
     public SocketServer(String host, int port,Integer serializer) {
+        this(host, port, serializer, new NacosServiceRegistry());
+    }
+
+    /**
+     * 构造函数，指定服务注册中心，例如不依赖Nacos的{@link com.zjz.registry.LocalServiceRegistry}。
+     */
+    public SocketServer(String host, int port, Integer serializer, ServiceRegistry serviceRegistry) {
+        this(host, port, serializer, serviceRegistry, null);
+    }
+
+    /**
+     * 构造函数，指定服务注册中心和并发限制器工厂。
+     *
+     * @param concurrencyLimiterFactory 并发限制器工厂，参数为“服务名#方法名”，返回null表示该方法不限制；
+     *                                  为null时不做并发限制，含义与{@link com.zjz.netty.server.NettyServerConfig}中的同名参数相同
+     */
+    public SocketServer(String host, int port, Integer serializer, ServiceRegistry serviceRegistry,
+                        Function<String, ConcurrencyLimiter> concurrencyLimiterFactory) {
         this.host = host;
         this.port = port;
         // 初始化线程池
-        threadPool = ThreadPoolFactory.createDefaultThreadPool("socket-rpc-server");
+        threadPool = ThreadPoolFactory.createThreadPool(THREAD_NAME_PREFIX, BUSINESS_CORE_POOL_SIZE,
+                BUSINESS_MAX_POOL_SIZE, BUSINESS_QUEUE_CAPACITY);
         // 初始化服务注册中心和服务提供者
-        this.serviceRegistry = new NacosServiceRegistry();
+        this.serviceRegistry = serviceRegistry;
         this.serviceProvider = new ServiceProviderImpl();
         this.serializer = CommonSerializer.getByCode(serializer);
+        this.concurrencyLimiters = concurrencyLimiterFactory == null
+                ? null : new ConcurrencyLimiterRegistry(concurrencyLimiterFactory);
     }
 
     /**
      * 启动服务端，开始监听客户端请求。
      * 该方法不接受参数，也不返回任何值。
      * 主要步骤包括：
-     * 1. 绑定服务端口；
+     * 1. 以非阻塞方式绑定服务端口；
      * 2. 日志记录服务启动信息；
      * 3. 添加关闭钩子以清理资源；
-     * 4. 循环监听客户端连接，并为每个连接创建处理线程。
+     * 4. 在当前线程上循环等待就绪事件：接收新连接、读取请求帧并交给业务线程池、写出业务线程提交的响应，
+     *    并定期关闭空闲的连接。
      */
     public void start(){
-        // 使用try-with-resources语句自动关闭ServerSocket
-        try(ServerSocket serverSocket = new ServerSocket()){
+        // 使用try-with-resources语句自动关闭选择器和ServerSocketChannel
+        try(Selector selector = Selector.open();
+            ServerSocketChannel serverChannel = ServerSocketChannel.open()){
+            this.selector = selector;
             // 绑定服务端口
-            serverSocket.bind(new InetSocketAddress(host, port));
+            serverChannel.bind(new InetSocketAddress(host, port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
             log.info("服务器启动……");
             // 添加关闭钩子，以在程序退出时执行清理逻辑
             ShutdownHook.getShutdownHook().addClearAllHook();
-            Socket socket;
-            // 循环监听客户端连接
-            while((socket = serverSocket.accept()) != null){
-                // 记录客户端连接信息
-                log.info("消费者连接：{}：{}" , socket.getInetAddress() , socket.getPort());
-                // 使用线程池处理客户端请求，避免直接创建大量线程影响性能
-                threadPool.execute(new SocketRequestHandlerThread(socket, requestHandler, serializer));
+            List<byte[]> frames = new ArrayList<>();
+            long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MILLIS);
+            long nextIdleCheckNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(IDLE_CHECK_INTERVAL_MILLIS);
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select(IDLE_CHECK_INTERVAL_MILLIS);
+                flushPendingWrites();
+                long now = System.nanoTime();
+                if (now - nextIdleCheckNanos >= 0) {
+                    closeIdleConnections(now, idleTimeoutNanos);
+                    nextIdleCheckNanos = now + TimeUnit.MILLISECONDS.toNanos(IDLE_CHECK_INTERVAL_MILLIS);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(serverChannel);
+                        continue;
+                    }
+                    SocketConnection connection = (SocketConnection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            if (!connection.read(frames)) {
+                                connection.close();
+                            }
+                            dispatch(connection, frames);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    } catch (IOException | RpcException e) {
+                        log.warn("连接读写时有错误发生，关闭连接: {}", connection, e);
+                        frames.clear();
+                        connection.close();
+                    }
+                }
             }
         }catch (IOException e){
             // 记录服务端启动失败的错误信息
@@ -91,6 +184,75 @@ public class SocketServer implements RpcServer {
         }
     }
 
+    /**
+     * 提交连接上待写出的响应，由业务线程调用
+     */
+    void scheduleWrite(SocketConnection connection) {
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    private void accept(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        // 记录客户端连接信息
+        log.info("消费者连接：{}", channel.getRemoteAddress());
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new SocketConnection(channel, key, this));
+    }
+
+    /**
+     * 将读到的请求帧交给业务线程池，线程池已满时立即返回服务端繁忙的响应
+     */
+    private void dispatch(SocketConnection connection, List<byte[]> frames) {
+        long receivedNanos = System.nanoTime();
+        for (byte[] frame : frames) {
+            try {
+                threadPool.execute(new SocketRequestHandlerThread(connection, frame, receivedNanos, requestHandler, serializer,
+                        concurrencyLimiters));
+            } catch (RejectedExecutionException e) {
+                log.warn("业务线程池已满，拒绝请求: {}", connection);
+                long requestId = Protocol.peekRequestId(frame);
+                SocketRequestHandlerThread.respond(connection, RpcResponse.fail(ResponseCode.SERVER_BUSY, requestId),
+                        serializer, Compressor.NO_COMPRESSOR, Protocol.version(frame[0]));
+            }
+        }
+        frames.clear();
+    }
+
+    /**
+     * 关闭空闲超时的连接，只在选择器线程中调用
+     */
+    private void closeIdleConnections(long nowNanos, long idleTimeoutNanos) {
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (key.isValid() && attachment instanceof SocketConnection
+                    && ((SocketConnection) attachment).isIdle(nowNanos, idleTimeoutNanos)) {
+                log.info("连接空闲超时，关闭连接: {}", attachment);
+                ((SocketConnection) attachment).close();
+            }
+        }
+    }
+
+    private void flushPendingWrites() {
+        SocketConnection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            if (!connection.isOpen()) {
+                continue;
+            }
+            try {
+                connection.flush();
+            } catch (IOException e) {
+                log.warn("写出响应时有错误发生，关闭连接: {}", connection, e);
+                connection.close();
+            }
+        }
+    }
+
     /**
      * 发布服务，将服务注册到服务注册中心，并启动服务端监听。
      *
@@ -1,52 +1,163 @@
 package com.zjz.utils;
 
+import com.zjz.codec.Protocol;
+import com.zjz.compress.Compressor;
 import com.zjz.entity.RpcRequest;
 import com.zjz.entity.RpcResponse;
 import com.zjz.enums.PackageType;
 import com.zjz.enums.RpcError;
 import com.zjz.exception.RpcException;
 import com.zjz.serializer.CommonSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
 
+/**
+ * 从流中读取一个完整的帧并反序列化，帧格式见{@link ObjectWriter}。
+ * 各字段和数据部分都读满为止，流在帧中途结束时抛出{@link java.io.EOFException}，不会把不完整的数据交给序列化器。
+ * 按第一个字节区分v1和v2帧，两个版本的帧都可以读取，v2帧中的附加信息设置到消息上。
+ * 帧头中标记了压缩算法时先解压数据再反序列化。
+ */
 @Slf4j
 public class ObjectReader {
 
-    private static final int MAGIC_NUMBER = 0xCAFEBABE;
+    // 允许的最大数据长度，与Netty解码器一致
+    private static final int MAX_BODY_LENGTH = 16 * 1024 * 1024;
 
     public static Object readObject(InputStream in) throws IOException {
-        byte[] numberBytes = new byte[4];
-        in.read(numberBytes);
-        int magic = bytesToInt(numberBytes);
-        if (magic != MAGIC_NUMBER) {
+        // DataInputStream本身不做缓冲，不会多读取下一帧的数据
+        DataInputStream input = new DataInputStream(in);
+        byte firstByte = input.readByte();
+        if (firstByte == Protocol.MAGIC_V2) {
+            return readV2Object(input);
+        }
+        int magic = firstByte << 24 | input.readUnsignedByte() << 16 | input.readUnsignedShort();
+        if (magic != Protocol.MAGIC_NUMBER) {
             log.error("不识别的协议包: {}", magic);
             throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
         }
-        in.read(numberBytes);
-        int packageCode = bytesToInt(numberBytes);
-        Class<?> packageClass;
-        if (packageCode == PackageType.REQUEST_PACK.getCode()) {
-            packageClass = RpcRequest.class;
-        } else if (packageCode == PackageType.RESPONSE_PACK.getCode()) {
-            packageClass = RpcResponse.class;
-        } else {
-            log.error("不识别的数据包: {}", packageCode);
+        Class<?> packageClass = packageClass(input.readInt());
+        int serializerField = input.readInt();
+        CommonSerializer serializer = serializer(serializerField & Compressor.SERIALIZER_MASK);
+        long requestId = input.readLong();
+        byte[] bytes = readBody(input, input.readInt());
+        int compressorCode = serializerField >>> Compressor.HEADER_SHIFT;
+        if (compressorCode != Compressor.NO_COMPRESSOR) {
+            bytes = decompress(bytes, 0, compressorCode);
+        }
+        Object obj = serializer.deserialize(bytes, packageClass);
+        Protocol.setHeaderFields(obj, requestId, null);
+        return obj;
+    }
+
+    /**
+     * 读取版本探测的回复，即一个PONG帧
+     *
+     * @return PONG帧的协议版本，v2说明对端支持v2
+     */
+    public static int readPongVersion(InputStream in) throws IOException {
+        DataInputStream input = new DataInputStream(in);
+        byte firstByte = input.readByte();
+        int version = Protocol.version(firstByte);
+        if (version < 0) {
+            log.error("不识别的协议包: {}", firstByte);
+            throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+        }
+        ByteBuffer header = ByteBuffer.allocate(Protocol.headerLength(version));
+        header.put(firstByte);
+        input.readFully(header.array(), 1, header.capacity() - 1);
+        int packageCode = version == Protocol.VERSION_2
+                ? header.get(2) & Protocol.TYPE_MASK : header.getInt(4);
+        if (packageCode != PackageType.HEARTBEAT_PONG.getCode() || header.getInt(Protocol.lengthFieldOffset(version)) != 0) {
+            log.error("版本探测收到了不是PONG的回复: {}", packageCode);
             throw new RpcException(RpcError.UNKNOWN_PACKAGE_TYPE);
         }
-        in.read(numberBytes);
-        int serializerCode = bytesToInt(numberBytes);
+        return version;
+    }
+
+    /**
+     * 读取v2帧魔数之后的部分：帧头其余的7个字节 + 请求号(varint) + [附加信息] + 消息体
+     */
+    private static Object readV2Object(DataInputStream input) throws IOException {
+        int version = input.readUnsignedByte();
+        if (version != Protocol.VERSION_2) {
+            log.error("不支持的协议版本: {}", version);
+            throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+        }
+        int flags = Protocol.checkFlags(input.readUnsignedByte());
+        Class<?> packageClass = packageClass(flags & Protocol.TYPE_MASK);
+        int codec = input.readUnsignedByte();
+        CommonSerializer serializer = serializer(Protocol.serializerCode(codec));
+        ByteBuf data = Unpooled.wrappedBuffer(readBody(input, input.readInt()));
+        long requestId = Protocol.readVarLong(data);
+        Map<String, String> attachments = (flags & Protocol.FLAG_ATTACHMENTS) != 0 ? Protocol.readAttachments(data) : null;
+        int compressorCode = Protocol.compressorCode(codec);
+        Object obj;
+        if (compressorCode != Compressor.NO_COMPRESSOR) {
+            obj = serializer.deserialize(decompress(data.array(), data.readerIndex(), compressorCode), packageClass);
+        } else {
+            obj = serializer.deserialize(data, packageClass);
+        }
+        Protocol.setHeaderFields(obj, requestId, attachments);
+        return obj;
+    }
+
+    private static Class<?> packageClass(int packageCode) {
+        if (packageCode == PackageType.REQUEST_PACK.getCode()) {
+            return RpcRequest.class;
+        }
+        if (packageCode == PackageType.RESPONSE_PACK.getCode()) {
+            return RpcResponse.class;
+        }
+        log.error("不识别的数据包: {}", packageCode);
+        throw new RpcException(RpcError.UNKNOWN_PACKAGE_TYPE);
+    }
+
+    private static CommonSerializer serializer(int serializerCode) {
         CommonSerializer serializer = CommonSerializer.getByCode(serializerCode);
         if (serializer == null) {
             log.error("不识别的反序列化器: {}", serializerCode);
             throw new RpcException(RpcError.UNKNOWN_SERIALIZER);
         }
-        in.read(numberBytes);
-        int length = bytesToInt(numberBytes);
+        return serializer;
+    }
+
+    private static byte[] readBody(DataInputStream input, int length) throws IOException {
+        if (length < 0 || length > MAX_BODY_LENGTH) {
+            log.error("数据包长度不合法: {}", length);
+            throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+        }
         byte[] bytes = new byte[length];
-        in.read(bytes);
-        return serializer.deserialize(bytes, packageClass);
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * 解压从offset开始的 原始长度(4) + 压缩数据
+     */
+    private static byte[] decompress(byte[] bytes, int offset, int compressorCode) {
+        Compressor compressor = Compressor.getByCode(compressorCode);
+        if (compressor == null) {
+            log.error("不识别的压缩算法: {}", compressorCode);
+            throw new RpcException(RpcError.UNKNOWN_COMPRESSOR);
+        }
+        if (bytes.length - offset < 4) {
+            throw new RpcException(RpcError.DECOMPRESSION_FAILED, "压缩数据长度不合法");
+        }
+        int originalLength = ByteBuffer.wrap(bytes).getInt(offset);
+        if (originalLength < 0 || originalLength > MAX_BODY_LENGTH) {
+            log.error("解压后的数据长度不合法: {}", originalLength);
+            throw new RpcException(RpcError.DECOMPRESSION_FAILED, "数据长度超过限制");
+        }
+        byte[] original = new byte[originalLength];
+        compressor.decompress(bytes, offset + 4, bytes.length - offset - 4, original, 0, originalLength);
+        return original;
     }
 
     public static int bytesToInt(byte[] src) {
@@ -58,4 +169,4 @@ public class ObjectReader {
         return value;
     }
 
-}
\ No newline at end of file
+}
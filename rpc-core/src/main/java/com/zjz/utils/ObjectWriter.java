@@ -1,38 +1,164 @@
 package com.zjz.utils;
 
+import com.zjz.codec.Protocol;
+import com.zjz.compress.Compressor;
 import com.zjz.entity.RpcRequest;
 import com.zjz.enums.PackageType;
 import com.zjz.serializer.CommonSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
+/**
+ * 按帧格式写出消息，默认使用v1帧：魔数(4) + 包类型(4) + 序列化器编号(4) + 请求号(8) + 数据长度(4) + 数据；
+ * 也可以指定使用8字节帧头、可以携带附加信息的v2帧，格式见{@link Protocol}。
+ * 帧头一次写入缓冲区，不再为每个字段分配字节数组；一个消息只调用一次写操作，避免在未缓冲的流上拆成多个TCP报文。
+ * 指定压缩算法时，数据达到阈值后压缩为 原始长度(4) + 压缩数据，帧头中的标记方式与{@link com.zjz.codec.CommonEncoder}一致。
+ */
 public class ObjectWriter {
 
-    private static final int MAGIC_NUMBER = 0xCAFEBABE;
+    // v1帧头长度
+    public static final int HEADER_LENGTH = Protocol.V1_HEADER_LENGTH;
+    // 数据不超过该大小时与帧头拼接后一次写出，更大的数据拼接的复制开销超过少一次写操作的收益
+    private static final int MAX_MERGED_BODY_LENGTH = 64 * 1024;
 
+    /**
+     * 序列化消息并写出一个完整的帧，写完后flush。
+     */
     public static void writeObject(OutputStream outputStream, Object object, CommonSerializer serializer) throws IOException {
+        writeObject(outputStream, object, serializer, Compressor.NO_COMPRESSOR, Compressor.DEFAULT_THRESHOLD);
+    }
 
-        outputStream.write(intToBytes(MAGIC_NUMBER));
-        if (object instanceof RpcRequest) {
-            outputStream.write(intToBytes(PackageType.REQUEST_PACK.getCode()));
+    /**
+     * 序列化消息，数据达到阈值时压缩，并写出一个v1帧，写完后flush。
+     *
+     * @param compressor 压缩算法编号，见{@link Compressor}
+     * @param compressThreshold 数据达到该字节数时才压缩
+     */
+    public static void writeObject(OutputStream outputStream, Object object, CommonSerializer serializer,
+                                   int compressor, int compressThreshold) throws IOException {
+        writeObject(outputStream, object, serializer, compressor, compressThreshold, Protocol.VERSION_1);
+    }
+
+    /**
+     * 序列化消息，数据达到阈值时压缩，并按指定的协议版本写出一个完整的帧，写完后flush。
+     *
+     * @param compressor 压缩算法编号，见{@link Compressor}
+     * @param compressThreshold 数据达到该字节数时才压缩
+     * @param protocolVersion 协议版本，见{@link Protocol}
+     */
+    public static void writeObject(OutputStream outputStream, Object object, CommonSerializer serializer,
+                                   int compressor, int compressThreshold, int protocolVersion) throws IOException {
+        ByteBuffer[] buffers = encode(object, serializer, compressor, compressThreshold, protocolVersion);
+        ByteBuffer header = buffers[0];
+        ByteBuffer body = buffers[1];
+        int length = body.remaining();
+        if (length <= MAX_MERGED_BODY_LENGTH) {
+            ByteBuffer frame = ByteBuffer.allocate(header.remaining() + length);
+            frame.put(header).put(body);
+            outputStream.write(frame.array());
         } else {
-            outputStream.write(intToBytes(PackageType.RESPONSE_PACK.getCode()));
+            outputStream.write(header.array(), header.arrayOffset() + header.position(), header.remaining());
+            outputStream.write(body.array(), body.arrayOffset() + body.position(), length);
         }
-        outputStream.write(intToBytes(serializer.getCode()));
-        byte[] bytes = serializer.serialize(object);
-        outputStream.write(intToBytes(bytes.length));
-        outputStream.write(bytes);
         outputStream.flush();
+    }
+
+    /**
+     * 序列化消息并编码为帧头和数据两个缓冲区，供{@link java.nio.channels.GatheringByteChannel}一次写出，数据部分不再复制。
+     *
+     * @return 依次为帧头和数据的缓冲区，均已可读
+     */
+    public static ByteBuffer[] encode(Object object, CommonSerializer serializer) {
+        return encode(object, serializer, Compressor.NO_COMPRESSOR, Compressor.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * 序列化消息，数据达到阈值时压缩，并编码为v1帧的帧头和数据两个缓冲区。
+     *
+     * @param compressor 压缩算法编号，见{@link Compressor}
+     * @param compressThreshold 数据达到该字节数时才压缩
+     * @return 依次为帧头和数据的缓冲区，均已可读
+     */
+    public static ByteBuffer[] encode(Object object, CommonSerializer serializer, int compressor, int compressThreshold) {
+        return encode(object, serializer, compressor, compressThreshold, Protocol.VERSION_1);
+    }
+
+    /**
+     * 序列化消息，数据达到阈值时压缩，并按指定的协议版本编码为帧头和数据两个缓冲区。
+     * v2帧的请求号和附加信息放在帧头缓冲区中，数据缓冲区只有消息体。
+     *
+     * @param compressor 压缩算法编号，见{@link Compressor}
+     * @param compressThreshold 数据达到该字节数时才压缩
+     * @param protocolVersion 协议版本，见{@link Protocol}
+     * @return 依次为帧头和数据的缓冲区，均已可读
+     */
+    public static ByteBuffer[] encode(Object object, CommonSerializer serializer, int compressor, int compressThreshold,
+                                      int protocolVersion) {
+        byte[] bytes = serializer.serialize(object);
+        Compressor bodyCompressor = Compressor.getByCode(compressor);
+        ByteBuffer body = compress(bytes, bodyCompressor, compressThreshold);
+        int compressorCode = body == null ? Compressor.NO_COMPRESSOR : bodyCompressor.getCode();
+        if (body == null) {
+            body = ByteBuffer.wrap(bytes);
+        }
+        ByteBuffer header = protocolVersion == Protocol.VERSION_2
+                ? writeV2Header(object, serializer, compressorCode, body.remaining())
+                : writeHeader(object, serializer, compressorCode, body.remaining());
+        return new ByteBuffer[]{header, body};
+    }
 
+    /**
+     * 数据达到阈值时压缩为 原始长度(4) + 压缩数据
+     *
+     * @return 压缩后的数据，未压缩或压缩后没有变小时返回null
+     */
+    private static ByteBuffer compress(byte[] bytes, Compressor compressor, int compressThreshold) {
+        if (compressor == null || bytes.length < compressThreshold) {
+            return null;
+        }
+        byte[] compressed = new byte[4 + compressor.maxCompressedLength(bytes.length)];
+        int compressedLength = compressor.compress(bytes, 0, bytes.length, compressed, 4);
+        if (4 + compressedLength >= bytes.length) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.wrap(compressed, 0, 4 + compressedLength);
+        body.putInt(0, bytes.length);
+        return body;
     }
 
-    private static byte[] intToBytes(int value) {
-        byte[] src = new byte[4];
-        src[0] = (byte) ((value>>24) & 0xFF);
-        src[1] = (byte) ((value>>16)& 0xFF);
-        src[2] = (byte) ((value>>8)&0xFF);
-        src[3] = (byte) (value & 0xFF);
-        return src;
+    private static ByteBuffer writeHeader(Object object, CommonSerializer serializer, int compressorCode, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+        buffer.putInt(Protocol.MAGIC_NUMBER);
+        if (object instanceof RpcRequest) {
+            buffer.putInt(PackageType.REQUEST_PACK.getCode());
+        } else {
+            buffer.putInt(PackageType.RESPONSE_PACK.getCode());
+        }
+        buffer.putInt(serializer.getCode() | compressorCode << Compressor.HEADER_SHIFT);
+        buffer.putLong(Protocol.requestId(object));
+        buffer.putInt(length);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 写出v2帧头 + 请求号(varint) + [附加信息]，数据长度包括请求号、附加信息和消息体
+     */
+    private static ByteBuffer writeV2Header(Object object, CommonSerializer serializer, int compressorCode, int length) {
+        boolean attachments = Protocol.hasAttachments(object);
+        ByteBuf header = Unpooled.buffer(attachments ? 256 : Protocol.V2_HEADER_LENGTH + 10);
+        Protocol.writeHeader(header, object instanceof RpcRequest
+                        ? PackageType.REQUEST_PACK.getCode() : PackageType.RESPONSE_PACK.getCode(),
+                attachments ? Protocol.FLAG_ATTACHMENTS : 0, serializer.getCode(), compressorCode);
+        Protocol.writeVarLong(header, Protocol.requestId(object));
+        if (attachments) {
+            Protocol.writeAttachments(header, Protocol.attachments(object));
+        }
+        header.setInt(Protocol.V2_LENGTH_FIELD_OFFSET, header.readableBytes() - Protocol.V2_HEADER_LENGTH + length);
+        return header.nioBuffer();
     }
-}
\ No newline at end of file
+}